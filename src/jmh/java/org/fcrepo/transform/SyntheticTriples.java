@@ -0,0 +1,77 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform;
+
+import static com.hp.hpl.jena.graph.NodeFactory.createLiteral;
+import static com.hp.hpl.jena.graph.NodeFactory.createURI;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fcrepo.kernel.api.utils.iterators.RdfStream;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * Reproducible synthetic resource descriptions for benchmarks: a topic
+ * resource with a title and an identifier, and the rest of the triples spread
+ * over a handful of Dublin Core properties and some child resources.
+ *
+ * @author agent
+ */
+public final class SyntheticTriples {
+
+    public static final String DC = "http://purl.org/dc/elements/1.1/";
+
+    public static final Node TOPIC = createURI("http://localhost:8080/rest/benchmark");
+
+    private static final Node CONTAINS = createURI("http://www.w3.org/ns/ldp#contains");
+
+    private static final String[] PROPERTIES = { "subject", "description", "creator", "date", "relation" };
+
+    private SyntheticTriples() {
+    }
+
+    /**
+     * Generate a description of the topic resource
+     * @param size the number of triples
+     * @return the triples
+     */
+    public static List<Triple> triples(final int size) {
+        final List<Triple> triples = new ArrayList<>(size);
+        triples.add(new Triple(TOPIC, createURI(DC + "title"), createLiteral("Benchmark resource")));
+        triples.add(new Triple(TOPIC, createURI(DC + "identifier"), createLiteral("benchmark")));
+        for (int i = triples.size(); i < size; i++) {
+            if (i % 10 == 0) {
+                triples.add(new Triple(TOPIC, CONTAINS, createURI(TOPIC.getURI() + "/child-" + i)));
+            } else {
+                triples.add(new Triple(TOPIC, createURI(DC + PROPERTIES[i % PROPERTIES.length]),
+                        createLiteral("value " + i)));
+            }
+        }
+        return triples.subList(0, size);
+    }
+
+    /**
+     * Wrap triples in a fresh stream, as a resource would supply them
+     * @param triples the triples
+     * @return a stream of the triples about the topic resource
+     */
+    public static RdfStream stream(final List<Triple> triples) {
+        return new RdfStream(triples).topic(TOPIC);
+    }
+}
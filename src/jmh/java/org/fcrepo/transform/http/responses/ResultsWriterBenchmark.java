@@ -0,0 +1,119 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.http.responses;
+
+import static com.hp.hpl.jena.query.QueryExecutionFactory.create;
+import static com.hp.hpl.jena.query.ResultSetFactory.copyResults;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.commons.io.output.NullOutputStream.NULL_OUTPUT_STREAM;
+import static org.apache.jena.riot.WebContent.contentTypeNTriples;
+import static org.apache.jena.riot.WebContent.contentTypeRDFXML;
+import static org.apache.jena.riot.WebContent.contentTypeResultsBIO;
+import static org.apache.jena.riot.WebContent.contentTypeResultsJSON;
+import static org.apache.jena.riot.WebContent.contentTypeResultsXML;
+import static org.apache.jena.riot.WebContent.contentTypeTextCSV;
+import static org.apache.jena.riot.WebContent.contentTypeTextTSV;
+import static org.apache.jena.riot.WebContent.contentTypeTurtle;
+import static org.fcrepo.transform.SyntheticTriples.stream;
+import static org.fcrepo.transform.SyntheticTriples.triples;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.query.ResultSetRewindable;
+import com.hp.hpl.jena.rdf.model.Model;
+
+/**
+ * Throughput of serializing SPARQL results in each supported format, both
+ * from an already evaluated result set and through a query execution.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ResultsWriterBenchmark {
+
+    private static final String QUERY = "SELECT ?s ?p ?o WHERE { ?s ?p ?o }";
+
+    @Param({"10", "1000", "100000", "1000000"})
+    private int size;
+
+    @Param({contentTypeTextTSV, contentTypeTextCSV, contentTypeResultsJSON, contentTypeResultsXML,
+            contentTypeResultsBIO, contentTypeTurtle, contentTypeNTriples, contentTypeRDFXML})
+    private String format;
+
+    private MediaType mediaType;
+
+    private Model model;
+
+    private ResultSetRewindable results;
+
+    private final ResultSetStreamingOutput resultSetWriter = new ResultSetStreamingOutput();
+
+    private final QueryExecutionProvider queryExecutionWriter = new QueryExecutionProvider();
+
+    /**
+     * Generate the triples and evaluate the query once
+     */
+    @Setup
+    public void setUp() {
+        mediaType = MediaType.valueOf(format);
+        model = stream(triples(size)).asModel();
+        final QueryExecution execution = create(QUERY, model);
+        try {
+            results = copyResults(execution.execSelect());
+        } finally {
+            execution.close();
+        }
+    }
+
+    /**
+     * Serialize an evaluated result set
+     */
+    @Benchmark
+    public void resultSetWriteTo() {
+        results.reset();
+        resultSetWriter.writeTo(results, ResultSet.class, ResultSet.class, null, mediaType,
+                new MultivaluedHashMap<>(), NULL_OUTPUT_STREAM);
+    }
+
+    /**
+     * Evaluate and serialize a query
+     */
+    @Benchmark
+    public void queryExecutionWriteTo() {
+        queryExecutionWriter.writeTo(create(QUERY, model), QueryExecution.class, QueryExecution.class, null,
+                mediaType, new MultivaluedHashMap<>(), NULL_OUTPUT_STREAM);
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.transformations;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.fcrepo.transform.SyntheticTriples.DC;
+import static org.fcrepo.transform.SyntheticTriples.TOPIC;
+import static org.fcrepo.transform.SyntheticTriples.stream;
+import static org.fcrepo.transform.SyntheticTriples.triples;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.rdf.model.Model;
+
+/**
+ * Throughput of applying compiled LDPath programs and SPARQL queries to a
+ * resource's triples, including building the in-memory model, and of
+ * evaluating a multi-step program over an already built model with and
+ * without remembering the steps taken.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TransformBenchmark {
+
+    private static final String PROGRAM = "@prefix dc : <" + DC + "> ;\n"
+            + "id = . :: xsd:string ;\n"
+            + "title = dc:title :: xsd:string ;\n"
+            + "subject = dc:subject :: xsd:string ;\n"
+            + "creator = dc:creator :: xsd:string ;\n";
+
+    // fields sharing the ldp:contains step, which a memoizing backend walks only once
+    private static final String MULTI_STEP_PROGRAM = "@prefix dc : <" + DC + "> ;\n"
+            + "@prefix ldp : <http://www.w3.org/ns/ldp#> ;\n"
+            + "children = ldp:contains :: xsd:string ;\n"
+            + "childTitles = ldp:contains / dc:title :: xsd:string ;\n"
+            + "childSubjects = ldp:contains / dc:subject :: xsd:string ;\n"
+            + "childCreators = ldp:contains / dc:creator :: xsd:string ;\n"
+            + "childDates = ldp:contains / dc:date :: xsd:string ;\n";
+
+    private static final String QUERY = "PREFIX dc: <" + DC + ">\n"
+            + "SELECT ?s ?title ?subject WHERE { ?s dc:title ?title . ?s dc:subject ?subject }";
+
+    @Param({"10", "1000", "100000", "1000000"})
+    private int size;
+
+    private List<Triple> triples;
+
+    private LDPathTransform ldpath;
+
+    private LDPathTransform multiStep;
+
+    private Model model;
+
+    private SparqlQueryTransform sparql;
+
+    /**
+     * Generate the triples and compile the transforms
+     */
+    @Setup
+    public void setUp() {
+        triples = triples(size);
+        ldpath = new LDPathTransform(new ByteArrayInputStream(PROGRAM.getBytes(UTF_8)));
+        multiStep = new LDPathTransform(new ByteArrayInputStream(MULTI_STEP_PROGRAM.getBytes(UTF_8)));
+        model = stream(triples).asModel();
+        sparql = new SparqlQueryTransform(new ByteArrayInputStream(QUERY.getBytes(UTF_8)));
+    }
+
+    /**
+     * @return the evaluated program
+     */
+    @Benchmark
+    public List<Map<String, Collection<Object>>> ldpathApply() {
+        return ldpath.apply(stream(triples));
+    }
+
+    /**
+     * @return the evaluated multi-step program, walking every step through the model
+     */
+    @Benchmark
+    public Map<String, Collection<?>> ldpathMultiStep() {
+        return multiStep.bind(model, TOPIC, false, null).asMap();
+    }
+
+    /**
+     * @return the evaluated multi-step program, remembering the steps already taken
+     */
+    @Benchmark
+    public Map<String, Collection<?>> ldpathMultiStepMemoized() {
+        return multiStep.bind(model, TOPIC, true, null).asMap();
+    }
+
+    /**
+     * @param blackhole consumes the solutions
+     */
+    @Benchmark
+    public void sparqlApply(final Blackhole blackhole) {
+        final QueryExecution execution = sparql.apply(stream(triples));
+        try {
+            final ResultSet results = execution.execSelect();
+            while (results.hasNext()) {
+                blackhole.consume(results.next());
+            }
+        } finally {
+            execution.close();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform;
+
+import static javax.jcr.nodetype.NodeType.NT_BASE;
+import static javax.jcr.nodetype.NodeType.NT_FILE;
+import static javax.jcr.nodetype.NodeType.NT_FOLDER;
+import static org.fcrepo.transform.transformations.LDPathTransform.CONFIGURATION_FOLDER;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.modeshape.jcr.api.JcrTools;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registers the transform node types and the default LDPath program tree in
+ * JCR, once, when the application starts. A version marker on the
+ * configuration root lets later startups skip the work entirely.
+ *
+ * @author agent
+ */
+@Component
+public class TransformConfigurationInitializer {
+
+    private static final Logger LOGGER = getLogger(TransformConfigurationInitializer.class);
+
+    public static final String TRANSFORM_CONFIGURATION = "/fedora:system/fedora:transform";
+
+    /**
+     * The version of the configuration tree installed by this release; bump it
+     * whenever the node types or default programs change.
+     */
+    public static final String CONFIGURATION_VERSION = "1";
+
+    static final String VERSION_MIXIN = "fedora:TransformConfigurationVersion";
+
+    static final String VERSION_PROPERTY = "fedora:transformConfigurationVersion";
+
+    @Inject
+    private Repository repository;
+
+    private JcrTools jcrTools = new JcrTools(true);
+
+    /**
+     * Register the LDPath configuration tree in JCR, unless the current
+     * version of it is already in place
+     *
+     * @throws RepositoryException if repository exception occurred
+     * @throws java.io.IOException if IO exception occurred
+     */
+    @PostConstruct
+    public void setUpRepositoryConfiguration() throws RepositoryException, IOException {
+
+        final Session internalSession = repository.login();
+        try {
+            if (isCurrent(internalSession)) {
+                LOGGER.debug("Transform configuration version {} already installed", CONFIGURATION_VERSION);
+                return;
+            }
+
+            // register our CND
+            jcrTools.registerNodeTypes(internalSession, "ldpath.cnd");
+
+            // create the configuration base path
+            final Node configuration = jcrTools.findOrCreateNode(internalSession, TRANSFORM_CONFIGURATION,
+                    "fedora:Configuration", "fedora:NodeTypeConfiguration");
+            final Node node =
+                jcrTools.findOrCreateNode(internalSession, CONFIGURATION_FOLDER + "default", NT_FOLDER, NT_FOLDER);
+            LOGGER.debug("Transforming node: {}", node.getPath());
+
+            // register an initial default program
+            if (!node.hasNode(NT_BASE)) {
+                final Node baseConfig = node.addNode(NT_BASE, NT_FILE);
+                jcrTools.uploadFile(internalSession, baseConfig.getPath(), getClass().getResourceAsStream(
+                        "/ldpath/default/nt_base_ldpath_program.txt"));
+            }
+
+            configuration.addMixin(VERSION_MIXIN);
+            configuration.setProperty(VERSION_PROPERTY, CONFIGURATION_VERSION);
+            internalSession.save();
+            LOGGER.info("Installed transform configuration version {}", CONFIGURATION_VERSION);
+        } finally {
+            internalSession.logout();
+        }
+    }
+
+    private static boolean isCurrent(final Session session) throws RepositoryException {
+        if (!session.nodeExists(TRANSFORM_CONFIGURATION)) {
+            return false;
+        }
+        final Node configuration = session.getNode(TRANSFORM_CONFIGURATION);
+        return configuration.hasProperty(VERSION_PROPERTY)
+                && CONFIGURATION_VERSION.equals(configuration.getProperty(VERSION_PROPERTY).getString());
+    }
+}
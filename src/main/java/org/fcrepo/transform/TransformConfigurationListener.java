@@ -0,0 +1,185 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform;
+
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static javax.jcr.observation.Event.NODE_ADDED;
+import static javax.jcr.observation.Event.NODE_MOVED;
+import static javax.jcr.observation.Event.NODE_REMOVED;
+import static javax.jcr.observation.Event.PROPERTY_ADDED;
+import static javax.jcr.observation.Event.PROPERTY_CHANGED;
+import static javax.jcr.observation.Event.PROPERTY_REMOVED;
+import static org.fcrepo.transform.TransformConfigurationInitializer.TRANSFORM_CONFIGURATION;
+import static org.fcrepo.transform.transformations.LDPathTransform.CONFIGURATION_FOLDER;
+import static org.fcrepo.transform.transformations.LDPathTransform.programCache;
+import static org.fcrepo.transform.transformations.LDPathTransform.programLocations;
+import static org.fcrepo.transform.transformations.LDPathTransform.reloadStoredTransform;
+import static org.modeshape.jcr.api.JcrConstants.JCR_CONTENT;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+
+import org.fcrepo.transform.http.responses.TransformResultCache;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Component;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Watches the transform configuration tree in JCR. When a stored LDPath
+ * program changes, the program locations and cached results of its key are
+ * dropped at once, and the program is recompiled in the background and
+ * swapped into the program cache in place of its earlier version. Changes
+ * elsewhere in the tree drop every location and result.
+ *
+ * @author agent
+ */
+@Component
+public class TransformConfigurationListener implements EventListener {
+
+    private static final Logger LOGGER = getLogger(TransformConfigurationListener.class);
+
+    private static final int EVENT_TYPES = NODE_ADDED | NODE_REMOVED | NODE_MOVED | PROPERTY_ADDED
+            | PROPERTY_CHANGED | PROPERTY_REMOVED;
+
+    @Inject
+    private Repository repository;
+
+    private Session session;
+
+    private ExecutorService reloader;
+
+    /**
+     * Start listening for changes to the transform configuration
+     * @throws RepositoryException if repository exception occurred
+     */
+    @PostConstruct
+    public void register() throws RepositoryException {
+        reloader = newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("fcrepo-transform-reload")
+                .setDaemon(true).build());
+        session = repository.login();
+        session.getWorkspace().getObservationManager().addEventListener(this, EVENT_TYPES,
+                TRANSFORM_CONFIGURATION, true, null, null, false);
+        LOGGER.debug("Listening for changes under {}", TRANSFORM_CONFIGURATION);
+    }
+
+    /**
+     * Stop listening for changes to the transform configuration
+     * @throws RepositoryException if repository exception occurred
+     */
+    @PreDestroy
+    public void unregister() throws RepositoryException {
+        reloader.shutdownNow();
+        try {
+            session.getWorkspace().getObservationManager().removeEventListener(this);
+        } finally {
+            session.logout();
+        }
+    }
+
+    @Override
+    public void onEvent(final EventIterator events) {
+        final Set<String> programKeys = new LinkedHashSet<>();
+        final Set<String> programPaths = new LinkedHashSet<>();
+        boolean everything = false;
+        while (events.hasNext()) {
+            final List<String> segments;
+            try {
+                segments = programSegments(events.nextEvent().getPath());
+            } catch (final RepositoryException e) {
+                LOGGER.warn("Could not read the path of a configuration change", e);
+                everything = true;
+                continue;
+            }
+            if (segments.isEmpty()) {
+                everything = true;
+                continue;
+            }
+            programKeys.add(segments.get(0));
+            if (segments.size() > 1) {
+                programPaths.add(CONFIGURATION_FOLDER + segments.get(0) + "/" + segments.get(1));
+            }
+        }
+
+        if (everything) {
+            LOGGER.debug("Transform configuration changed; dropping all program locations and results");
+            programLocations().invalidateAll();
+            TransformResultCache.shared().invalidateAll();
+        } else {
+            LOGGER.debug("LDPath programs {} changed; dropping their locations and results", programKeys);
+            for (final String programKey : programKeys) {
+                programLocations().invalidate(programKey);
+                TransformResultCache.shared().invalidate(programKey);
+            }
+        }
+        for (final String programPath : programPaths) {
+            reloader.execute(() -> reload(programPath));
+        }
+    }
+
+    /**
+     * Recompile a stored program and swap it into the program cache, or drop
+     * it from the cache if it is gone
+     * @param programPath the repository path of the program node
+     */
+    void reload(final String programPath) {
+        try {
+            session.refresh(false);
+            if (session.nodeExists(programPath)) {
+                final Node programNode = session.getNode(programPath);
+                if (programNode.hasNode(JCR_CONTENT)) {
+                    reloadStoredTransform(programNode);
+                    LOGGER.debug("Reloaded the LDPath program at {}", programPath);
+                    return;
+                }
+            }
+            programCache().invalidate(programPath);
+        } catch (final RepositoryException | RuntimeException e) {
+            LOGGER.warn("Could not reload the LDPath program at {}; it will be compiled on next use",
+                    programPath, e);
+            programCache().invalidate(programPath);
+        }
+    }
+
+    /**
+     * Split the path of a change into the program key and the node type it
+     * concerns
+     * @param path the path of the changed node or property
+     * @return the program key, followed by the node type if the change is
+     *         within one program; empty if the change isn't within a program key
+     */
+    static List<String> programSegments(final String path) {
+        if (!path.startsWith(CONFIGURATION_FOLDER)) {
+            return ImmutableList.of();
+        }
+        return Splitter.on('/').omitEmptyStrings().splitToList(path.substring(CONFIGURATION_FOLDER.length()));
+    }
+}
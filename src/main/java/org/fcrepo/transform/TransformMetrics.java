@@ -0,0 +1,166 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.hp.hpl.jena.rdf.model.ModelFactory.createDefaultModel;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.fcrepo.metrics.RegistryService.getInstance;
+
+import javax.ws.rs.core.MediaType;
+
+import org.fcrepo.kernel.api.utils.iterators.RdfStream;
+import org.fcrepo.transform.transformations.LDPathEvaluation;
+import org.fcrepo.transform.transformations.LDPathEvaluations;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+
+/**
+ * Timers for the phases of a transform request, published through the
+ * repository's metrics registry. Stored programs are timed under
+ * {@code org.fcrepo.transform.http.FedoraTransform.ldpath.<key>.<phase>},
+ * once the key has been found to name a stored program; requests for several
+ * programs at once under {@code ...FedoraTransform.ldpaths.<phase>}; and
+ * POSTed transforms under {@code ...FedoraTransform.posted.<type>.<phase>},
+ * where the type is "ldpath", "sparql" or "other". No name is taken from
+ * anything else a client sends, so the number of metrics stays bounded.
+ *
+ * @author agent
+ */
+public final class TransformMetrics {
+
+    public static final String LOOKUP = "lookup";
+
+    public static final String PARSE = "parse";
+
+    public static final String TRIPLES = "triples";
+
+    public static final String MODEL = "model";
+
+    public static final String MODEL_SIZE = "modelSize";
+
+    public static final String EVALUATION = "evaluation";
+
+    public static final String SERIALIZATION = "serialization";
+
+    /**
+     * The request attribute holding the metric prefix of the current transform
+     */
+    public static final String METRICS_PREFIX = TransformMetrics.class.getName() + ".prefix";
+
+    private static final String ROOT = "org.fcrepo.transform.http.FedoraTransform";
+
+    private static final MetricRegistry REGISTRY = getInstance().getMetrics();
+
+    private TransformMetrics() {
+    }
+
+    /**
+     * Name the metrics of a stored LDPath program
+     * @param program the key of a stored program
+     * @return the metric prefix
+     */
+    public static String ldpathPrefix(final String program) {
+        return name(ROOT, "ldpath", program);
+    }
+
+    /**
+     * Name the metrics of requests for several stored LDPath programs at once
+     * @return the metric prefix
+     */
+    public static String ldpathsPrefix() {
+        return name(ROOT, "ldpaths");
+    }
+
+    /**
+     * Name the metrics of POSTed queries or programs
+     * @param type "ldpath", "sparql" or "other"
+     * @return the metric prefix
+     */
+    public static String postedPrefix(final String type) {
+        return name(ROOT, "posted", type);
+    }
+
+    /**
+     * Get the timer of a phase
+     * @param prefix the metric prefix
+     * @param phase the phase
+     * @return the timer
+     */
+    public static Timer timer(final String prefix, final String phase) {
+        return REGISTRY.timer(name(prefix, phase));
+    }
+
+    /**
+     * Drain a stream of triples into a model, timing the generation of the
+     * triples and the building of the model separately
+     * @param prefix the metric prefix
+     * @param stream the triples
+     * @return the model
+     */
+    public static Model materialize(final String prefix, final RdfStream stream) {
+        final Model model = createDefaultModel();
+        model.setNsPrefixes(stream.namespaces());
+        final Graph graph = model.getGraph();
+
+        long generating = 0;
+        long building = 0;
+        long mark = nanoTime();
+        while (stream.hasNext()) {
+            final Triple triple = stream.next();
+            final long generated = nanoTime();
+            generating += generated - mark;
+            graph.add(triple);
+            mark = nanoTime();
+            building += mark - generated;
+        }
+        generating += nanoTime() - mark;
+
+        timer(prefix, TRIPLES).update(generating, NANOSECONDS);
+        timer(prefix, MODEL).update(building, NANOSECONDS);
+        REGISTRY.histogram(name(prefix, MODEL_SIZE)).update(graph.size());
+        return model;
+    }
+
+    /**
+     * Record the writing of a response entity. Evaluating an LDPath program is
+     * interleaved with writing its results, so the evaluation time is split
+     * out; a SPARQL query's results are likewise streamed, so for queries the
+     * serialization time includes executing the query.
+     * @param prefix the metric prefix
+     * @param mediaType the media type written
+     * @param entity the entity written
+     * @param elapsedNanos the time taken to write the entity
+     */
+    public static void recordWrite(final String prefix, final MediaType mediaType, final Object entity,
+            final long elapsedNanos) {
+        long serializing = elapsedNanos;
+        final long evaluating = entity instanceof LDPathEvaluation ? ((LDPathEvaluation) entity).evaluationNanos()
+                : entity instanceof LDPathEvaluations ? ((LDPathEvaluations) entity).evaluationNanos() : -1;
+        if (evaluating >= 0) {
+            timer(prefix, EVALUATION).update(evaluating, NANOSECONDS);
+            serializing -= evaluating;
+        }
+        // timings are taken apart, so their difference may come out a little below zero
+        REGISTRY.timer(name(prefix, SERIALIZATION, mediaType.getType() + "-" + mediaType.getSubtype()))
+                .update(Math.max(0, serializing), NANOSECONDS);
+    }
+}
@@ -21,10 +21,20 @@ import java.util.function.Function;
 
 /**
  * Generic interface for transforming a resource's properties
- * to an implementation-defined type
+ * to an implementation-defined type.
+ *
+ * A Transformation is a compiled program: it is built once from the program
+ * text, is immutable, and may be applied to any number of RdfStreams from any
+ * number of threads.
  *
  * @author cbeer
  */
 public interface Transformation<T> extends Function<RdfStream, T> {
 
+    /**
+     * @return the triples this transformation reads, so that no others need be generated
+     */
+    default TripleRequirements requirements() {
+        return TripleRequirements.ALL;
+    }
 }
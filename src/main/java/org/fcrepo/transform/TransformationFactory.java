@@ -49,7 +49,7 @@ public class TransformationFactory {
     }
 
     /**
-     * Get a Transformation from a MediaType and an InputStream with
+     * Get a compiled Transformation from a MediaType and an InputStream with
      * the transform program
      * @param <T> the transformation type
      * @param contentType the content type
@@ -0,0 +1,402 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform;
+
+import static com.hp.hpl.jena.rdf.model.ResourceFactory.createProperty;
+import static org.fcrepo.kernel.api.RdfLexicon.LDP_NAMESPACE;
+import static org.fcrepo.kernel.api.RdfLexicon.REPOSITORY_NAMESPACE;
+import static org.fcrepo.kernel.api.RdfLexicon.isManagedPredicate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.marmotta.ldpath.api.backend.NodeBackend;
+import org.apache.marmotta.ldpath.api.selectors.NodeSelector;
+import org.apache.marmotta.ldpath.api.tests.NodeTest;
+import org.apache.marmotta.ldpath.model.fields.FieldMapping;
+import org.apache.marmotta.ldpath.model.programs.Program;
+import org.apache.marmotta.ldpath.model.selectors.GroupedSelector;
+import org.apache.marmotta.ldpath.model.selectors.IntersectionSelector;
+import org.apache.marmotta.ldpath.model.selectors.PathSelector;
+import org.apache.marmotta.ldpath.model.selectors.PropertySelector;
+import org.apache.marmotta.ldpath.model.selectors.ReversePropertySelector;
+import org.apache.marmotta.ldpath.model.selectors.SelfSelector;
+import org.apache.marmotta.ldpath.model.selectors.StringConstantSelector;
+import org.apache.marmotta.ldpath.model.selectors.TestingSelector;
+import org.apache.marmotta.ldpath.model.selectors.UnionSelector;
+import org.apache.marmotta.ldpath.model.tests.LiteralLanguageTest;
+import org.apache.marmotta.ldpath.model.tests.LiteralTypeTest;
+import org.apache.marmotta.ldpath.model.tests.PathEqualityTest;
+import org.apache.marmotta.ldpath.model.tests.PathTest;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.sparql.core.TriplePath;
+import com.hp.hpl.jena.sparql.expr.E_Exists;
+import com.hp.hpl.jena.sparql.expr.E_NotExists;
+import com.hp.hpl.jena.sparql.expr.Expr;
+import com.hp.hpl.jena.sparql.expr.ExprFunction;
+import com.hp.hpl.jena.sparql.syntax.ElementBind;
+import com.hp.hpl.jena.sparql.syntax.ElementFilter;
+import com.hp.hpl.jena.sparql.syntax.ElementPathBlock;
+import com.hp.hpl.jena.sparql.syntax.ElementSubQuery;
+import com.hp.hpl.jena.sparql.syntax.ElementTriplesBlock;
+import com.hp.hpl.jena.sparql.syntax.ElementVisitorBase;
+import com.hp.hpl.jena.sparql.syntax.ElementWalker;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+/**
+ * The triples a transform reads, as found by analyzing the program: the
+ * predicates it follows and whether it follows any of them backwards, to
+ * inbound references. A transform that can't be analyzed needs all the
+ * triples the repository would serve by default.
+ *
+ * Membership triples use whatever predicates a container names, so they can't
+ * be ruled out from the program alone and are always generated.
+ *
+ * @author agent
+ */
+public final class TripleRequirements {
+
+    /**
+     * The requirements of a transform that may read any triple
+     */
+    public static final TripleRequirements ALL = new TripleRequirements(null, false);
+
+    static final String PREFER_CONTAINMENT = LDP_NAMESPACE + "PreferContainment";
+
+    static final String PREFER_SERVER_MANAGED = REPOSITORY_NAMESPACE + "ServerManaged";
+
+    static final String PREFER_INBOUND_REFERENCES = REPOSITORY_NAMESPACE + "InboundReferences";
+
+    private static final String CONTAINS = LDP_NAMESPACE + "contains";
+
+    private static final Map<String, String> DEFAULT_NAMESPACES = ImmutableMap.of("ldp", LDP_NAMESPACE,
+            "fedora", REPOSITORY_NAMESPACE, "rdf", RDF.getURI());
+
+    private final Set<String> predicates;
+
+    private final boolean inbound;
+
+    private TripleRequirements(final Set<String> predicates, final boolean inbound) {
+        this.predicates = predicates;
+        this.inbound = inbound;
+    }
+
+    /**
+     * @param predicates the URIs of the predicates read
+     * @param inbound whether any predicate is followed from object to subject
+     * @return the requirements
+     */
+    public static TripleRequirements of(final Collection<String> predicates, final boolean inbound) {
+        return new TripleRequirements(ImmutableSet.copyOf(predicates), inbound);
+    }
+
+    /**
+     * Combine the requirements of several transforms evaluated over the same triples
+     * @param requirements the requirements of each transform
+     * @return the requirements of them all
+     */
+    public static TripleRequirements union(final Collection<TripleRequirements> requirements) {
+        final Set<String> predicates = new HashSet<>();
+        boolean inbound = false;
+        for (final TripleRequirements each : requirements) {
+            if (each.isUnrestricted()) {
+                return ALL;
+            }
+            predicates.addAll(each.predicates);
+            inbound |= each.inbound;
+        }
+        return of(predicates, inbound);
+    }
+
+    /**
+     * Analyze a parsed LDPath program by walking its selectors and tests. Any
+     * step that could follow an arbitrary predicate, or of a kind not
+     * recognized here, e.g. a recursive path or a function, needs all triples.
+     * @param program the parsed program
+     * @param backend the backend the program was parsed with
+     * @param <N> the type of the backend's nodes
+     * @return the requirements
+     */
+    public static <N> TripleRequirements forLdpath(final Program<N> program, final NodeBackend<N> backend) {
+        final SelectorCollector<N> collector = new SelectorCollector<>(backend);
+        collector.walk(program);
+        return collector.unrestricted ? ALL : of(collector.predicates, collector.inbound);
+    }
+
+    /**
+     * Analyze a SPARQL query's pattern. Property paths, variable predicates,
+     * subqueries and EXISTS tests aren't analyzed, and need all triples.
+     * @param query the query
+     * @return the requirements
+     */
+    public static TripleRequirements forQuery(final Query query) {
+        if (query.isDescribeType() || query.getQueryPattern() == null) {
+            return ALL;
+        }
+        final PredicateCollector collector = new PredicateCollector();
+        ElementWalker.walk(query.getQueryPattern(), collector);
+        return collector.unrestricted ? ALL : of(collector.predicates, false);
+    }
+
+    /**
+     * @return whether the transform may read any triple
+     */
+    public boolean isUnrestricted() {
+        return predicates == null;
+    }
+
+    /**
+     * @return whether the transform reads the resource's containment triples
+     */
+    public boolean needsContainment() {
+        return isUnrestricted() || predicates.contains(CONTAINS);
+    }
+
+    /**
+     * @return whether the transform reads any server-managed triple
+     */
+    public boolean needsServerManaged() {
+        return isUnrestricted() || predicates.stream().anyMatch(p -> p.equals(RDF.type.getURI())
+                || !p.equals(CONTAINS) && isManagedPredicate.test(createProperty(p)));
+    }
+
+    /**
+     * @return whether the transform reads triples that refer to the resource
+     */
+    public boolean needsInboundReferences() {
+        return inbound;
+    }
+
+    /**
+     * Express these requirements in the vocabulary of the Prefer request
+     * header, relative to the triples served by default
+     * @return the preference, or null if the default triples are needed
+     */
+    public String preferHeader() {
+        final List<String> include = new ArrayList<>();
+        final List<String> omit = new ArrayList<>();
+        if (needsInboundReferences()) {
+            include.add(PREFER_INBOUND_REFERENCES);
+        }
+        if (!needsContainment()) {
+            omit.add(PREFER_CONTAINMENT);
+        }
+        if (!needsServerManaged()) {
+            omit.add(PREFER_SERVER_MANAGED);
+        }
+        return preferHeader(include, omit);
+    }
+
+    /**
+     * Build a Prefer request header asking for a representation with the given
+     * kinds of triples included and omitted. Each may be given as a URI, or
+     * abbreviated with the "ldp" or "fedora" prefix, e.g. ldp:PreferContainment;
+     * several may be given in one value, separated by spaces or commas.
+     * @param include the kinds of triples to include
+     * @param omit the kinds of triples to omit
+     * @return the preference, or null if none are given
+     */
+    public static String preferHeader(final Collection<String> include, final Collection<String> omit) {
+        final List<String> included = expand(include);
+        final List<String> omitted = expand(omit);
+        if (included.isEmpty() && omitted.isEmpty()) {
+            return null;
+        }
+        final StringBuilder preference = new StringBuilder("return=representation");
+        if (!included.isEmpty()) {
+            preference.append("; include=\"").append(Joiner.on(' ').join(included)).append('"');
+        }
+        if (!omitted.isEmpty()) {
+            preference.append("; omit=\"").append(Joiner.on(' ').join(omitted)).append('"');
+        }
+        return preference.toString();
+    }
+
+    private static List<String> expand(final Collection<String> values) {
+        final List<String> uris = new ArrayList<>();
+        if (values != null) {
+            for (final String value : values) {
+                for (final String name : Splitter.on(CharMatcher.anyOf(" ,")).omitEmptyStrings().split(value)) {
+                    final int colon = name.indexOf(':');
+                    final String namespace = colon > 0 ? DEFAULT_NAMESPACES.get(name.substring(0, colon)) : null;
+                    uris.add(namespace == null ? name : namespace + name.substring(colon + 1));
+                }
+            }
+        }
+        return uris;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof TripleRequirements && ((TripleRequirements) other).inbound == inbound
+                && Objects.equals(((TripleRequirements) other).predicates, predicates);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(predicates, inbound);
+    }
+
+    @Override
+    public String toString() {
+        return isUnrestricted() ? "all triples" : predicates + (inbound ? " and inbound references" : "");
+    }
+
+    private static class PredicateCollector extends ElementVisitorBase {
+
+        private final List<String> predicates = new ArrayList<>();
+
+        private boolean unrestricted = false;
+
+        @Override
+        public void visit(final ElementTriplesBlock el) {
+            for (final Triple triple : el.getPattern()) {
+                add(triple.getPredicate());
+            }
+        }
+
+        @Override
+        public void visit(final ElementPathBlock el) {
+            for (final TriplePath path : el.getPattern()) {
+                if (path.isTriple()) {
+                    add(path.getPredicate());
+                } else {
+                    unrestricted = true;
+                }
+            }
+        }
+
+        @Override
+        public void visit(final ElementSubQuery el) {
+            unrestricted = true;
+        }
+
+        @Override
+        public void visit(final ElementFilter el) {
+            unrestricted |= readsPattern(el.getExpr());
+        }
+
+        @Override
+        public void visit(final ElementBind el) {
+            unrestricted |= readsPattern(el.getExpr());
+        }
+
+        // EXISTS and NOT EXISTS match a graph pattern of their own, which isn't analyzed
+        private static boolean readsPattern(final Expr expr) {
+            if (expr instanceof E_Exists || expr instanceof E_NotExists) {
+                return true;
+            }
+            return expr instanceof ExprFunction
+                    && ((ExprFunction) expr).getArgs().stream().anyMatch(PredicateCollector::readsPattern);
+        }
+
+        private void add(final Node predicate) {
+            if (predicate.isURI()) {
+                predicates.add(predicate.getURI());
+            } else {
+                unrestricted = true;
+            }
+        }
+    }
+
+    /**
+     * Collects the predicates an LDPath program follows, through the accessors
+     * of the selectors and tests it is built from.
+     */
+    private static class SelectorCollector<N> {
+
+        private final NodeBackend<N> backend;
+
+        private final List<String> predicates = new ArrayList<>();
+
+        private boolean inbound = false;
+
+        private boolean unrestricted = false;
+
+        private SelectorCollector(final NodeBackend<N> backend) {
+            this.backend = backend;
+        }
+
+        private void walk(final Program<N> program) {
+            for (final FieldMapping<?, N> field : program.getFields()) {
+                walk(field.getSelector());
+            }
+            if (program.getFilter() != null) {
+                walk(program.getFilter());
+            }
+            if (program.getBoost() != null) {
+                walk(program.getBoost().getSelector());
+            }
+        }
+
+        private void walk(final NodeSelector<N> selector) {
+            if (selector instanceof PropertySelector) {
+                add(((PropertySelector<N>) selector).getProperty(), false);
+            } else if (selector instanceof ReversePropertySelector) {
+                add(((ReversePropertySelector<N>) selector).getProperty(), true);
+            } else if (selector instanceof PathSelector) {
+                walk(((PathSelector<N>) selector).getLeft());
+                walk(((PathSelector<N>) selector).getRight());
+            } else if (selector instanceof UnionSelector) {
+                walk(((UnionSelector<N>) selector).getLeft());
+                walk(((UnionSelector<N>) selector).getRight());
+            } else if (selector instanceof IntersectionSelector) {
+                walk(((IntersectionSelector<N>) selector).getLeft());
+                walk(((IntersectionSelector<N>) selector).getRight());
+            } else if (selector instanceof GroupedSelector) {
+                walk(((GroupedSelector<N>) selector).getContent());
+            } else if (selector instanceof TestingSelector) {
+                walk(((TestingSelector<N>) selector).getDelegate());
+                walk(((TestingSelector<N>) selector).getTest());
+            } else if (!(selector instanceof SelfSelector || selector instanceof StringConstantSelector)) {
+                // e.g. a wildcard, which follows every predicate
+                unrestricted = true;
+            }
+        }
+
+        private void walk(final NodeTest<N> test) {
+            if (test instanceof PathEqualityTest) {
+                walk(((PathEqualityTest<N>) test).getPath());
+            } else if (test instanceof PathTest) {
+                walk(((PathTest<N>) test).getPath());
+            } else if (!(test instanceof LiteralTypeTest || test instanceof LiteralLanguageTest)) {
+                unrestricted = true;
+            }
+        }
+
+        private void add(final N property, final boolean reverse) {
+            if (property != null && backend.isURI(property)) {
+                predicates.add(backend.stringValue(property));
+                inbound |= reverse;
+            } else {
+                unrestricted = true;
+            }
+        }
+    }
+}
@@ -15,10 +15,26 @@
  */
 package org.fcrepo.transform.http;
 
-import static javax.jcr.nodetype.NodeType.NT_BASE;
-import static javax.jcr.nodetype.NodeType.NT_FILE;
-import static javax.jcr.nodetype.NodeType.NT_FOLDER;
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Splitter.on;
+import static com.google.common.base.Throwables.propagate;
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static java.lang.Boolean.getBoolean;
+import static java.lang.Integer.getInteger;
+import static java.lang.Long.getLong;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import static javax.ws.rs.core.HttpHeaders.VARY;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
+import static javax.ws.rs.core.MediaType.valueOf;
+import static javax.ws.rs.core.Response.ok;
+import static javax.ws.rs.core.Variant.mediaTypes;
+import static org.apache.http.HttpStatus.SC_BAD_REQUEST;
 import static org.apache.jena.riot.WebContent.contentTypeN3;
 import static org.apache.jena.riot.WebContent.contentTypeNTriples;
 import static org.apache.jena.riot.WebContent.contentTypeRDFXML;
@@ -31,39 +47,100 @@ import static org.apache.jena.riot.WebContent.contentTypeTextCSV;
 import static org.apache.jena.riot.WebContent.contentTypeTextPlain;
 import static org.apache.jena.riot.WebContent.contentTypeTextTSV;
 import static org.apache.jena.riot.WebContent.contentTypeTurtle;
+import static org.fcrepo.metrics.RegistryService.getInstance;
+import static org.fcrepo.transform.TransformMetrics.EVALUATION;
+import static org.fcrepo.transform.TransformMetrics.LOOKUP;
+import static org.fcrepo.transform.TransformMetrics.METRICS_PREFIX;
+import static org.fcrepo.transform.TransformMetrics.PARSE;
+import static org.fcrepo.transform.TransformMetrics.ldpathPrefix;
+import static org.fcrepo.transform.TransformMetrics.ldpathsPrefix;
+import static org.fcrepo.transform.TransformMetrics.materialize;
+import static org.fcrepo.transform.TransformMetrics.postedPrefix;
+import static org.fcrepo.transform.TransformMetrics.recordWrite;
+import static org.fcrepo.transform.TransformMetrics.timer;
+import static org.fcrepo.transform.http.responses.LDPathEvaluationProvider.APPLICATION_SMILE;
+import static org.fcrepo.transform.http.responses.LDPathEvaluationProvider.APPLICATION_SMILE_TYPE;
+import static org.fcrepo.transform.http.responses.SubtreeStreamingOutput.APPLICATION_NDJSON;
+import static org.fcrepo.transform.http.responses.SubtreeStreamingOutput.ldpathResult;
+import static org.fcrepo.transform.http.responses.SubtreeStreamingOutput.sparqlResult;
+import static org.fcrepo.transform.http.responses.TransformResultCache.POSTED_QUERIES;
+import static org.fcrepo.transform.http.responses.TransformResultCache.resultKey;
+import static org.fcrepo.transform.http.responses.TransformResultCache.transformTag;
 import static org.fcrepo.transform.transformations.LDPathTransform.APPLICATION_RDF_LDPATH;
-import static org.fcrepo.transform.transformations.LDPathTransform.CONFIGURATION_FOLDER;
 import static org.fcrepo.transform.transformations.LDPathTransform.getNodeTypeTransform;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.text.ParseException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
-import javax.annotation.PostConstruct;
 import javax.inject.Inject;
-import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.ResourceContext;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.core.Variant;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
 
 import org.fcrepo.http.api.ContentExposingResource;
+import org.fcrepo.http.commons.domain.MultiPrefer;
 import org.fcrepo.kernel.api.models.FedoraResource;
 import org.fcrepo.kernel.api.utils.iterators.RdfStream;
+import org.fcrepo.transform.Transformation;
 import org.fcrepo.transform.TransformationFactory;
+import org.fcrepo.transform.TripleRequirements;
+import org.fcrepo.transform.http.responses.SubtreeStreamingOutput;
+import org.fcrepo.transform.http.responses.TransformResultCache;
+import org.fcrepo.transform.precompute.LdpathPrecomputer;
+import org.fcrepo.transform.transformations.LDPathEvaluation;
+import org.fcrepo.transform.transformations.LDPathEvaluations;
+import org.fcrepo.transform.transformations.LDPathTransform;
+import org.fcrepo.transform.transformations.SparqlQueryTransform;
 import org.jvnet.hk2.annotations.Optional;
-import org.modeshape.jcr.api.JcrTools;
 import org.slf4j.Logger;
 import org.springframework.context.annotation.Scope;
 
 import com.codahale.metrics.annotation.Timed;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.rdf.model.Model;
 
 /**
  * Endpoint for transforming object properties using stored
@@ -80,12 +157,109 @@ public class FedoraTransform extends ContentExposingResource {
 
     private static final Logger LOGGER = getLogger(FedoraTransform.class);
 
+    private static final TransformResultCache RESULT_CACHE = TransformResultCache.shared();
+
+    /**
+     * System property setting how many transforms are evaluated at once
+     */
+    public static final String EXECUTOR_THREADS = "fcrepo.transform.executor.threads";
+
+    /**
+     * System property setting how many transforms may wait to be evaluated before further ones are refused
+     */
+    public static final String EXECUTOR_QUEUE = "fcrepo.transform.executor.queue";
+
+    /**
+     * System property setting how many seconds refused clients are asked to wait before retrying
+     */
+    public static final String EXECUTOR_RETRY_AFTER = "fcrepo.transform.executor.retryAfter";
+
+    private static final int DEFAULT_EXECUTOR_QUEUE = 64;
+
+    private static final long DEFAULT_EXECUTOR_RETRY_AFTER = 5;
+
+    /**
+     * System property turning on the sharing of one evaluation among concurrent identical transforms. Shared
+     * results are buffered rather than streamed, so it is off by default.
+     */
+    public static final String COALESCING = "fcrepo.transform.coalescing.enabled";
+
+    private static final SingleFlight<String, byte[]> IN_FLIGHT = new SingleFlight<>();
+
+    private static final TransformExecutor EXECUTOR = new TransformExecutor(
+            getInteger(EXECUTOR_THREADS, Runtime.getRuntime().availableProcessors()),
+            getInteger(EXECUTOR_QUEUE, DEFAULT_EXECUTOR_QUEUE),
+            getLong(EXECUTOR_RETRY_AFTER, DEFAULT_EXECUTOR_RETRY_AFTER));
+
+    static {
+        RESULT_CACHE.registerMetrics(getInstance().getMetrics(), name(FedoraTransform.class, "resultCache"));
+        EXECUTOR.registerMetrics(getInstance().getMetrics(), name(FedoraTransform.class, "executor"));
+        IN_FLIGHT.registerMetrics(getInstance().getMetrics(), name(FedoraTransform.class, "coalescing"));
+    }
+
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    // evaluates a transform on the request thread
+    private static final Executor REQUEST_THREAD = Runnable::run;
+
+    // several stored programs may be asked for at once, separated by commas
+    private static final Splitter PROGRAM_LIST = on(',').trimResults().omitEmptyStrings();
+
+    // the request headers a stored program's response depends on
+    private static final String VARIES_WITH = "Accept, Prefer";
+
+    // the media types QueryExecutionProvider can write, in the order they are offered
+    private static final List<Variant> QUERY_VARIANTS = mediaTypes(valueOf(contentTypeTextTSV),
+            valueOf(contentTypeTextCSV), valueOf(contentTypeResultsJSON), valueOf(contentTypeResultsXML),
+            valueOf(contentTypeResultsBIO), valueOf(contentTypeTurtle), valueOf(contentTypeNTriples),
+            valueOf(contentTypeRDFXML)).build();
+
     @Inject
     @Optional
     private TransformationFactory transformationFactory;
 
+    @Inject
+    @Optional
+    private LdpathPrecomputer precomputer;
+
+    private TransformResultCache resultCache = RESULT_CACHE;
+
+    private TransformExecutor executor = EXECUTOR;
+
+    private SingleFlight<String, byte[]> inFlight = IN_FLIGHT;
+
+    private boolean coalesce = getBoolean(COALESCING);
+
+    @Context
+    protected ResourceContext resourceContext;
+
+    @Context
+    protected Providers providers;
+
+    @Context
+    private HttpServletRequest servletRequest;
+
     @PathParam("path") protected String externalPath;
 
+    /**
+     * Request header lowering, in milliseconds, how long a POSTed SPARQL query may run
+     */
+    public static final String QUERY_TIMEOUT_HEADER = "Query-Timeout";
+
+    @HeaderParam(QUERY_TIMEOUT_HEADER) protected Long requestedTimeout;
+
+    @HeaderParam("Prefer") protected String preferHeader;
+
+    /**
+     * Kinds of triples, in the vocabulary of the Prefer header, to feed to the transform
+     */
+    @QueryParam("include") protected List<String> include;
+
+    /**
+     * Kinds of triples, in the vocabulary of the Prefer header, to keep from the transform
+     */
+    @QueryParam("omit") protected List<String> omit;
+
     /**
      * Default entry point
      */
@@ -102,42 +276,34 @@ public class FedoraTransform extends ContentExposingResource {
 
 
     /**
-     * Register the LDPath configuration tree in JCR
+     * Execute an LDpath program transform. The response carries a strong ETag
+     * derived from the resource and the program, and conditional requests are
+     * answered before any triples are generated. Which triples are transformed
+     * may be chosen with a Prefer header or the include and omit parameters.
+     *
+     * Programs precomputed as resources change are served from the stored
+     * result while it is fresh, and are otherwise evaluated as usual.
+     *
+     * Several programs may be given, separated by commas, e.g. solr,oai; their
+     * results are answered together in one object keyed by program, and the
+     * resource's triples are generated only once for all of them.
      *
+     * @param program the LDpath program
+     * @return Binary blob
      * @throws RepositoryException if repository exception occurred
-     * @throws java.io.IOException if IO exception occurred
-     * @throws SecurityException if security exception occurred
      */
-    @PostConstruct
-    public void setUpRepositoryConfiguration() throws RepositoryException, IOException {
-
-        final JcrTools jcrTools = new JcrTools(true);
-        final Session internalSession = sessions.getInternalSession();
-        try {
-            // register our CND
-            jcrTools.registerNodeTypes(internalSession, "ldpath.cnd");
-
-            // create the configuration base path
-            jcrTools.findOrCreateNode(internalSession, "/fedora:system/fedora:transform", "fedora:Configuration",
-                    "fedora:NodeTypeConfiguration");
-            final Node node =
-                jcrTools.findOrCreateNode(internalSession, CONFIGURATION_FOLDER + "default", NT_FOLDER, NT_FOLDER);
-            LOGGER.debug("Transforming node: {}", node.getPath());
-
-            // register an initial default program
-            if (!node.hasNode(NT_BASE)) {
-                final Node baseConfig = node.addNode(NT_BASE, NT_FILE);
-                jcrTools.uploadFile(internalSession, baseConfig.getPath(), getClass().getResourceAsStream(
-                        "/ldpath/default/nt_base_ldpath_program.txt"));
-            }
-            internalSession.save();
-        } finally {
-            internalSession.logout();
-        }
+    @GET
+    @Path("{program}")
+    @Produces({APPLICATION_JSON})
+    @Timed
+    public Response evaluateLdpathProgram(@PathParam("program") final String program)
+            throws RepositoryException {
+        return await(prepareLdpathProgram(program, APPLICATION_JSON_TYPE).apply(REQUEST_THREAD));
     }
 
     /**
-     * Execute an LDpath program transform
+     * Execute an LDpath program transform, answering in Smile, the compact
+     * binary form of JSON, rather than JSON
      *
      * @param program the LDpath program
      * @return Binary blob
@@ -145,17 +311,332 @@ public class FedoraTransform extends ContentExposingResource {
      */
     @GET
     @Path("{program}")
-    @Produces({APPLICATION_JSON})
+    @Produces({APPLICATION_SMILE})
     @Timed
-    public Object evaluateLdpathProgram(@PathParam("program") final String program)
+    public Response evaluateLdpathProgramAsSmile(@PathParam("program") final String program)
             throws RepositoryException {
+        return await(prepareLdpathProgram(program, APPLICATION_SMILE_TYPE).apply(REQUEST_THREAD));
+    }
+
+    /**
+     * Execute an LDpath program transform on the bounded transform executor
+     * rather than the request thread, answering 503 with Retry-After when the
+     * executor is saturated. Suspending the response needs the servlet to be
+     * configured with {@code <async-supported>true</async-supported>}.
+     *
+     * @param program the LDpath program
+     * @param response the suspended response
+     * @throws RepositoryException if repository exception occurred
+     */
+    @GET
+    @Path("fcr:async/{program}")
+    @Produces({APPLICATION_JSON})
+    public void evaluateLdpathProgramAsync(@PathParam("program") final String program,
+            @Suspended final AsyncResponse response) throws RepositoryException {
+        executor.submit(response, prepareLdpathProgram(program, APPLICATION_JSON_TYPE));
+    }
+
+    /**
+     * Execute an LDpath program transform on the bounded transform executor,
+     * answering in Smile
+     *
+     * @param program the LDpath program
+     * @param response the suspended response
+     * @throws RepositoryException if repository exception occurred
+     */
+    @GET
+    @Path("fcr:async/{program}")
+    @Produces({APPLICATION_SMILE})
+    public void evaluateLdpathProgramAsSmileAsync(@PathParam("program") final String program,
+            @Suspended final AsyncResponse response) throws RepositoryException {
+        executor.submit(response, prepareLdpathProgram(program, APPLICATION_SMILE_TYPE));
+    }
+
+    /**
+     * Do the parts of an LDPath program transform that need the request: find
+     * the program, evaluate the request's preconditions and start generating
+     * the resource's triples, so that what is left can run on another thread
+     *
+     * @param programList the LDpath program, or several separated by commas
+     * @param mediaType the media type to answer in
+     * @return starts the evaluation of the transform on an executor
+     * @throws RepositoryException if repository exception occurred
+     */
+    private Function<Executor, CompletableFuture<Response>> prepareLdpathProgram(final String programList,
+            final MediaType mediaType) throws RepositoryException {
+        final Set<String> programs = ImmutableSet.copyOf(PROGRAM_LIST.split(programList));
+        if (programs.size() > 1) {
+            return prepareLdpathPrograms(programs, mediaType);
+        }
+        // e.g. "default," or "default,default" name just one program
+        final String program = getOnlyElement(programs, programList);
         LOGGER.info("GET transform, '{}', for '{}'", program, externalPath);
 
-        final RdfStream rdfStream = getResourceTriples().session(session)
-                .topic(translator().reverse().convert(resource()).asNode());
+        final long lookupStart = nanoTime();
+        final LDPathTransform transform = getNodeTypeTransform(resource().getNode(), program);
+        // only name metrics after a stored program, never after whatever a client asked for
+        final String metrics = ldpathPrefix(program);
+        timer(metrics, LOOKUP).update(nanoTime() - lookupStart, NANOSECONDS);
+        final boolean json = APPLICATION_JSON_TYPE.equals(mediaType);
+        // each representation needs its own strong entity tag
+        final EntityTag etag = transformEtag(json ? transform.version() : transform.version() + "/" + mediaType);
+        final Date lastModified = transformLastModified(transform.lastModified());
+
+        final Response notModified = notModified(etag, lastModified);
+        if (notModified != null) {
+            LOGGER.debug("Transform, '{}', of '{}' is unchanged", program, externalPath);
+            return pool -> completedFuture(notModified);
+        }
+
+        // results are precomputed under the same tag, for requests asking for no particular triples
+        if (json && precomputer != null && clientPreference() == null) {
+            final byte[] result = precomputer.lookup(translator().reverse().convert(resource()).getURI(),
+                    program, etag);
+            if (result != null) {
+                LOGGER.debug("Serving the precomputed transform, '{}', of '{}'", program, externalPath);
+                final Response response = validated(ok(result, APPLICATION_JSON_TYPE), etag, lastModified);
+                return pool -> completedFuture(response);
+            }
+        }
+        final boolean cached = resultCache.isEnabled(program);
+        if (cached || coalesce) {
+            final String key = resultKey(program, uriInfo.getBaseUri(), resource().getPath(), etag, mediaType,
+                    session.getUserID());
+            final byte[] hit = cached ? resultCache.get(key) : null;
+            if (hit != null) {
+                final Response response = validated(ok(hit, mediaType), etag, lastModified);
+                return pool -> completedFuture(response);
+            }
+            final MessageBodyWriter<LDPathEvaluation> writer = writer(LDPathEvaluation.class, mediaType);
+            return pool -> sharedResult(key, cached, pool, () -> {
+                final RdfStream rdfStream = resourceTriples(transform.requirements());
+                return () -> serialize(writer, bindLdpathProgram(transform, rdfStream, metrics),
+                        LDPathEvaluation.class, mediaType, metrics);
+            }).thenApply(result -> validated(ok(result, mediaType), etag, lastModified));
+        }
+        tagRequest(metrics);
+        final RdfStream rdfStream = resourceTriples(transform.requirements());
+        return pool -> supplyAsync(() -> bindLdpathProgram(transform, rdfStream, metrics), pool)
+                .thenApply(evaluation -> validated(ok(evaluation, mediaType), etag, lastModified));
+    }
+
+    /**
+     * Do the parts of a transform by several LDPath programs that need the
+     * request. The programs are bound to the same triples, generated and built
+     * into a model once, and their results are answered together, keyed by
+     * program.
+     *
+     * @param programs the LDpath programs
+     * @param mediaType the media type to answer in
+     * @return starts the evaluation of the transforms on an executor
+     * @throws RepositoryException if repository exception occurred
+     */
+    private Function<Executor, CompletableFuture<Response>> prepareLdpathPrograms(final Set<String> programs,
+            final MediaType mediaType) throws RepositoryException {
+        LOGGER.info("GET transforms, {}, for '{}'", programs, externalPath);
+
+        final long lookupStart = nanoTime();
+        final Map<String, LDPathTransform> transforms = new LinkedHashMap<>();
+        for (final String program : programs) {
+            transforms.put(program, getNodeTypeTransform(resource().getNode(), program));
+        }
+        final String metrics = ldpathsPrefix();
+        timer(metrics, LOOKUP).update(nanoTime() - lookupStart, NANOSECONDS);
+        final String versions = transforms.values().stream().map(LDPathTransform::version).collect(joining(","));
+        final EntityTag etag = transformEtag(APPLICATION_JSON_TYPE.equals(mediaType) ? versions
+                : versions + "/" + mediaType);
+        final Date lastModified = transforms.values().stream().anyMatch(t -> t.lastModified() == null) ? null
+                : transformLastModified(transforms.values().stream().map(LDPathTransform::lastModified)
+                        .max(Date::compareTo).get());
+
+        final Response notModified = notModified(etag, lastModified);
+        if (notModified != null) {
+            LOGGER.debug("Transforms, {}, of '{}' are unchanged", programs, externalPath);
+            return pool -> completedFuture(notModified);
+        }
+
+        final TripleRequirements requirements = TripleRequirements.union(
+                transforms.values().stream().map(LDPathTransform::requirements).collect(toList()));
+        if (coalesce) {
+            final String key = resultKey(String.join(",", programs), uriInfo.getBaseUri(), resource().getPath(),
+                    etag, mediaType, session.getUserID());
+            final MessageBodyWriter<LDPathEvaluations> writer = writer(LDPathEvaluations.class, mediaType);
+            return pool -> sharedResult(key, false, pool, () -> {
+                final RdfStream rdfStream = resourceTriples(requirements);
+                return () -> serialize(writer, bindLdpathPrograms(transforms, rdfStream, metrics),
+                        LDPathEvaluations.class, mediaType, metrics);
+            }).thenApply(result -> validated(ok(result, mediaType), etag, lastModified));
+        }
+        tagRequest(metrics);
+        final RdfStream rdfStream = resourceTriples(requirements);
+        return pool -> supplyAsync(() -> bindLdpathPrograms(transforms, rdfStream, metrics), pool)
+                .thenApply(evaluation -> validated(ok(evaluation, mediaType), etag, lastModified));
+    }
+
+    /**
+     * Evaluate a request's preconditions against a transform's validators
+     *
+     * @param etag the entity tag of the transform
+     * @param lastModified when the transform last changed, or null if unknown
+     * @return a Not Modified response, or null if the transform must be evaluated
+     */
+    private Response notModified(final EntityTag etag, final Date lastModified) {
+        final ResponseBuilder notModified = lastModified == null ? request.evaluatePreconditions(etag)
+                : request.evaluatePreconditions(lastModified, etag);
+        return notModified == null ? null : notModified.tag(etag).header(VARY, VARIES_WITH).build();
+    }
+
+    /**
+     * Get a serialized transform result from the result cache, or produce it
+     * on an executor, sharing the work with any identical transforms under way
+     * when coalescing is on
+     *
+     * @param key the result key
+     * @param cached whether the result is cached
+     * @param executor runs the computation
+     * @param preparation does the parts that need the request, on its thread, only if the result must be
+     *        produced here, and returns the computation that produces it
+     * @return the result, once produced
+     */
+    private CompletableFuture<byte[]> sharedResult(final String key, final boolean cached, final Executor executor,
+            final Supplier<Supplier<byte[]>> preparation) {
+        final byte[] hit = cached ? resultCache.get(key) : null;
+        if (hit != null) {
+            return completedFuture(hit);
+        }
+        final Supplier<Supplier<byte[]>> caching = !cached ? preparation : () -> {
+            final Supplier<byte[]> computation = preparation.get();
+            return () -> {
+                final byte[] result = computation.get();
+                resultCache.put(key, result);
+                return result;
+            };
+        };
+        return coalesce ? inFlight.get(key, executor, caching) : supplyAsync(caching.get(), executor);
+    }
+
+    /**
+     * Wait on the request thread for a transform to be evaluated
+     *
+     * @param evaluation the evaluation
+     * @return the result
+     */
+    private static <T> T await(final CompletableFuture<T> evaluation) {
+        try {
+            return evaluation.join();
+        } catch (final CompletionException e) {
+            throw propagate(e.getCause());
+        }
+    }
+
+    /**
+     * Add a transform's validators to its response
+     *
+     * @param builder the response
+     * @param etag the entity tag of the transform
+     * @param lastModified when the transform last changed, or null if unknown
+     * @return the response
+     */
+    private static Response validated(final ResponseBuilder builder, final EntityTag etag, final Date lastModified) {
+        builder.tag(etag).header(VARY, VARIES_WITH);
+        if (lastModified != null) {
+            builder.lastModified(lastModified);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Compute a strong entity tag for a transform of this resource
+     *
+     * @param transformVersion the version of the program or query
+     * @return an entity tag that changes whenever the resource or the program does
+     */
+    EntityTag transformEtag(final String transformVersion) {
+        return transformTag(resource().getEtagValue(), transformVersion, clientPreference());
+    }
+
+    /**
+     * Find which triples the client asked to have transformed: the include and
+     * omit query parameters, failing those a Prefer header asking for a
+     * particular representation
+     *
+     * @return the client's preference, or null if it stated none
+     */
+    String clientPreference() {
+        final String fromParameters = TripleRequirements.preferHeader(include, omit);
+        if (fromParameters != null) {
+            return fromParameters;
+        }
+        return preferHeader != null && preferHeader.contains("return=") ? preferHeader : null;
+    }
+
+    /**
+     * Find when a transform of this resource last changed, to the second
+     *
+     * @param transformLastModified when the program or query was last modified, or null if unknown
+     * @return the later of the two modification dates, or null if the program's date is unknown
+     */
+    Date transformLastModified(final Date transformLastModified) {
+        final Date resourceLastModified = resource().getLastModifiedDate();
+        if (transformLastModified == null || resourceLastModified == null) {
+            return null;
+        }
+        final long latest = Math.max(resourceLastModified.getTime(), transformLastModified.getTime());
+        return new Date(latest - latest % 1000);
+    }
+
+    /**
+     * Bind the stored LDPath program for this resource's type to its triples
+     *
+     * @param program the LDpath program key
+     * @return the bound program, ready to be evaluated
+     * @throws RepositoryException if repository exception occurred
+     */
+    LDPathEvaluation bindLdpathProgram(final String program) throws RepositoryException {
+        return bindLdpathProgram(getNodeTypeTransform(resource().getNode(), program));
+    }
 
-        return getNodeTypeTransform(resource().getNode(), program).apply(rdfStream);
+    /**
+     * Bind an LDPath program to the triples of this resource it reads, as a
+     * GET request asking for no particular triples would
+     *
+     * @param transform the program
+     * @return the bound program, ready to be evaluated
+     */
+    public LDPathEvaluation bindLdpathProgram(final LDPathTransform transform) {
+        return transform.bind(resourceTriples(transform.requirements()));
+    }
 
+    /**
+     * Create a transform endpoint for another resource, sharing the session and
+     * request context of the current request
+     *
+     * @param resourceContext the current request's resource context
+     * @param externalPath the external path of the resource
+     * @return the initialized endpoint
+     */
+    static FedoraTransform forPath(final ResourceContext resourceContext, final String externalPath) {
+        final FedoraTransform transform = resourceContext.initResource(new FedoraTransform());
+        // initialization injects the current request's (absent) path parameter, so set the path afterwards
+        transform.externalPath = externalPath.replaceFirst("^/+", "");
+        return transform;
+    }
+
+    /**
+     * Create a transform endpoint for a resource outside of any request, e.g.
+     * to evaluate programs as resources change
+     *
+     * @param session the session to read the resource with
+     * @param uriInfo addresses the repository's resources
+     * @param externalPath the external path of the resource
+     * @return the endpoint
+     */
+    public static FedoraTransform forSession(final Session session, final UriInfo uriInfo,
+            final String externalPath) {
+        final FedoraTransform transform = new FedoraTransform(externalPath.replaceFirst("^/+", ""));
+        transform.session = session;
+        transform.uriInfo = uriInfo;
+        return transform;
     }
 
     /**
@@ -173,18 +654,285 @@ public class FedoraTransform extends ContentExposingResource {
             contentTypeN3, contentTypeNTriples, contentTypeRDFXML})
     @Timed
     public Object evaluateTransform(@HeaderParam("Content-Type") final MediaType contentType,
-                                    final InputStream requestBodyStream) {
+            final InputStream requestBodyStream) {
+        return await(prepareTransform(contentType, requestBodyStream).apply(REQUEST_THREAD));
+    }
+
+    /**
+     * Create a transform endpoint for a resource outside of any request, e.g.
+     * to evaluate programs as resources change
+     *
+     * @param session the session to read the resource with
+     * @param uriInfo addresses the repository's resources
+     * @param externalPath the external path of the resource
+     * @return the endpoint
+     */
+    public static FedoraTransform forSession(final Session session, final UriInfo uriInfo,
+            final String externalPath) {
+        final FedoraTransform transform = new FedoraTransform(externalPath.replaceFirst("^/+", ""));
+        transform.session = session;
+        transform.uriInfo = uriInfo;
+        return transform;
+    }
+
+    /**
+     * Get the LDPath output as a JSON stream appropriate for e.g. Solr,
+     * evaluating the transform on the bounded transform executor rather than
+     * the request thread. Suspending the response needs the servlet to be
+     * configured with {@code <async-supported>true</async-supported>}.
+     *
+     * @param contentType the content type
+     * @param requestBodyStream the request body stream
+     * @param response the suspended response
+     */
+    @POST
+    @Path("fcr:async")
+    @Consumes({APPLICATION_RDF_LDPATH, contentTypeSPARQLQuery})
+    @Produces({APPLICATION_JSON, contentTypeTextTSV, contentTypeTextCSV,
+            contentTypeSSE, contentTypeTextPlain, contentTypeResultsJSON,
+            contentTypeResultsXML, contentTypeResultsBIO, contentTypeTurtle,
+            contentTypeN3, contentTypeNTriples, contentTypeRDFXML})
+    public void evaluateTransformAsync(@HeaderParam("Content-Type") final MediaType contentType,
+            final InputStream requestBodyStream, @Suspended final AsyncResponse response) {
+        executor.submit(response, prepareTransform(contentType, requestBodyStream));
+    }
+
+    /**
+     * Do the parts of a POSTed transform that need the request: read and parse
+     * the transform, choose the media type of a cached result and start
+     * generating the resource's triples
+     *
+     * @param contentType the content type
+     * @param requestBodyStream the request body stream
+     * @return starts the evaluation of the transform on an executor
+     */
+    private Function<Executor, CompletableFuture<Object>> prepareTransform(final MediaType contentType,
+            final InputStream requestBodyStream) {
 
         if (transformationFactory == null) {
             transformationFactory = new TransformationFactory();
         }
         LOGGER.info("POST transform for '{}'", externalPath);
 
-        final RdfStream rdfStream = getResourceTriples().session(session)
-                .topic(translator().reverse().convert(resource()).asNode());
+        final long parseStart = nanoTime();
+        final Transformation<?> transform = transformationFactory.getTransform(contentType, requestBodyStream);
+        final String metrics = postedMetrics(transform);
+        timer(metrics, PARSE).update(nanoTime() - parseStart, NANOSECONDS);
+
+        final boolean cached = resultCache.isEnabledForQueries();
+        if ((cached || coalesce) && transform instanceof SparqlQueryTransform) {
+            final Variant variant = request.selectVariant(QUERY_VARIANTS);
+            if (variant != null) {
+                final SparqlQueryTransform query = (SparqlQueryTransform) transform;
+                final EntityTag etag = transformEtag(query.version());
+                // a query cut short by a shorter deadline must not be shared with those allowed longer
+                final String key = resultKey(POSTED_QUERIES + "/" + SparqlQueryTransform.timeout(requestedTimeout),
+                        uriInfo.getBaseUri(), resource().getPath(), etag, variant.getMediaType(),
+                        session.getUserID());
+                final MessageBodyWriter<QueryExecution> writer = writer(QueryExecution.class, variant.getMediaType());
+                return pool -> sharedResult(key, cached, pool, () -> {
+                    final RdfStream rdfStream = resourceTriples(transform.requirements());
+                    return () -> serialize(writer, query.bind(materialize(metrics, rdfStream), requestedTimeout),
+                            QueryExecution.class, variant.getMediaType(), metrics);
+                }).thenApply(result -> ok(result, variant.getMediaType()).tag(etag).build());
+            }
+        }
+
+        tagRequest(metrics);
+        final RdfStream rdfStream = resourceTriples(transform.requirements());
+        return pool -> supplyAsync(() -> {
+            if (transform instanceof SparqlQueryTransform) {
+                return ((SparqlQueryTransform) transform).bind(materialize(metrics, rdfStream), requestedTimeout);
+            }
+            if (transform instanceof LDPathTransform) {
+                final LDPathEvaluation evaluation = ((LDPathTransform) transform)
+                        .bind(materialize(metrics, rdfStream), rdfStream.topic());
+                final Map<String, Collection<?>> result = evaluation.asMap();
+                timer(metrics, EVALUATION).update(evaluation.evaluationNanos(), NANOSECONDS);
+                return ImmutableList.of(result);
+            }
+            return transform.apply(rdfStream);
+        }, pool);
+    }
+
+    /**
+     * Name the metrics of a POSTed transform
+     *
+     * @param transform the transform
+     * @return the metric prefix
+     */
+    private static String postedMetrics(final Transformation<?> transform) {
+        if (transform instanceof SparqlQueryTransform) {
+            return postedPrefix("sparql");
+        }
+        if (transform instanceof LDPathTransform) {
+            return postedPrefix("ldpath");
+        }
+        return postedPrefix("other");
+    }
+
+    /**
+     * Bind a stored LDPath program to this resource's triples, timing the
+     * generation of the triples and the building of the model
+     *
+     * @param transform the program
+     * @param rdfStream the resource's triples
+     * @param metrics the metric prefix
+     * @return the bound program
+     */
+    private static LDPathEvaluation bindLdpathProgram(final LDPathTransform transform, final RdfStream rdfStream,
+            final String metrics) {
+        return transform.bind(materialize(metrics, rdfStream), rdfStream.topic());
+    }
+
+    /**
+     * Bind several LDPath programs to this resource's triples, building the
+     * triples any of them reads into a model just once
+     *
+     * @param transforms the programs, by program key
+     * @param rdfStream the triples any of the programs reads
+     * @param metrics the metric prefix
+     * @return the bound programs
+     */
+    private static LDPathEvaluations bindLdpathPrograms(final Map<String, LDPathTransform> transforms,
+            final RdfStream rdfStream, final String metrics) {
+        final Model model = materialize(metrics, rdfStream);
+        final Map<String, LDPathEvaluation> evaluations = new LinkedHashMap<>();
+        transforms.forEach((program, transform) -> evaluations.put(program, transform.bind(model, rdfStream.topic())));
+        return new LDPathEvaluations(evaluations);
+    }
+
+    /**
+     * Have the time taken to write this request's response recorded under a
+     * metric prefix
+     *
+     * @param metrics the metric prefix
+     */
+    private void tagRequest(final String metrics) {
+        if (servletRequest != null) {
+            servletRequest.setAttribute(METRICS_PREFIX, metrics);
+        }
+    }
 
-        return transformationFactory.getTransform(contentType, requestBodyStream).apply(rdfStream);
+    /**
+     * Find the registered provider that writes a response entity
+     *
+     * @param type the type of the entity
+     * @param mediaType the media type to write it as
+     * @return the writer
+     */
+    private <T> MessageBodyWriter<T> writer(final Class<T> type, final MediaType mediaType) {
+        return providers.getMessageBodyWriter(type, type, NO_ANNOTATIONS, mediaType);
+    }
 
+    /**
+     * Serialize a response entity as the registered providers would
+     *
+     * @param writer the provider that writes the entity
+     * @param entity the entity
+     * @param type the type of the entity
+     * @param mediaType the media type to serialize it as
+     * @param metrics the metric prefix
+     * @return the serialized entity
+     */
+    private static <T> byte[] serialize(final MessageBodyWriter<T> writer, final T entity, final Class<T> type,
+            final MediaType mediaType, final String metrics) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final long start = nanoTime();
+        try {
+            writer.writeTo(entity, type, type, NO_ANNOTATIONS, mediaType, new MultivaluedHashMap<>(), out);
+        } catch (final IOException e) {
+            throw new WebApplicationException(e);
+        }
+        recordWrite(metrics, mediaType, entity, nanoTime() - start);
+        return out.toByteArray();
+    }
+
+    /**
+     * Execute an LDpath program transform on this resource and its descendants
+     *
+     * @param program the LDpath program
+     * @param depth the depth to descend to, or a negative value for no limit
+     * @return the results as newline-delimited JSON
+     * @throws RepositoryException if repository exception occurred
+     */
+    @GET
+    @Path("{program}/fcr:subtree")
+    @Produces({APPLICATION_NDJSON})
+    @Timed
+    public StreamingOutput evaluateLdpathProgramOnSubtree(@PathParam("program") final String program,
+            @QueryParam("depth") @DefaultValue("-1") final int depth) throws RepositoryException {
+        LOGGER.info("GET subtree transform, '{}', for '{}' to depth {}", program, externalPath, depth);
+
+        return new SubtreeStreamingOutput(resource().getNode(), depth,
+                path -> ldpathResult(forPath(resourceContext, path).bindLdpathProgram(program)));
+    }
+
+    /**
+     * Apply a POSTed LDPath program or SPARQL query to this resource and its
+     * descendants
+     *
+     * @param contentType the content type
+     * @param depth the depth to descend to, or a negative value for no limit
+     * @param requestBodyStream the request body stream
+     * @return the results as newline-delimited JSON
+     * @throws RepositoryException if repository exception occurred
+     */
+    @POST
+    @Path("fcr:subtree")
+    @Consumes({APPLICATION_RDF_LDPATH, contentTypeSPARQLQuery})
+    @Produces({APPLICATION_NDJSON})
+    @Timed
+    public StreamingOutput evaluateTransformOnSubtree(@HeaderParam("Content-Type") final MediaType contentType,
+            @QueryParam("depth") @DefaultValue("-1") final int depth,
+            final InputStream requestBodyStream) throws RepositoryException {
+
+        if (transformationFactory == null) {
+            transformationFactory = new TransformationFactory();
+        }
+        LOGGER.info("POST subtree transform for '{}' to depth {}", externalPath, depth);
+
+        final Transformation<?> transform = transformationFactory.getTransform(contentType, requestBodyStream);
+
+        return new SubtreeStreamingOutput(resource().getNode(), depth, path -> {
+            final RdfStream rdfStream = forPath(resourceContext, path).resourceTriples(transform.requirements());
+            if (transform instanceof LDPathTransform) {
+                return ldpathResult(((LDPathTransform) transform).bind(rdfStream));
+            }
+            return sparqlResult(((SparqlQueryTransform) transform).bind(rdfStream.asModel(), requestedTimeout));
+        });
+    }
+
+    /**
+     * Get the triples of this resource that a transform reads. A client may
+     * choose them itself, e.g. for a program that can't be analyzed; otherwise
+     * only the kinds of triples the transform needs are generated, which for a
+     * container with many children can be a small fraction of them.
+     *
+     * @param requirements the triples the transform reads
+     * @return the triples, with the resource as their topic
+     */
+    RdfStream resourceTriples(final TripleRequirements requirements) {
+        final String clientPreference = clientPreference();
+        final String preference = clientPreference != null ? clientPreference : requirements.preferHeader();
+        if (preference != null) {
+            LOGGER.debug("Generating the triples of '{}' preferred by {}: {}", externalPath,
+                    clientPreference != null ? "the client" : "the transform", preference);
+            try {
+                prefer = new MultiPrefer(preference);
+            } catch (final ParseException e) {
+                throw new WebApplicationException(e, SC_BAD_REQUEST);
+            }
+        }
+        return resourceTriples();
+    }
+
+    /**
+     * @return the triples of this resource, with the resource as their topic
+     */
+    RdfStream resourceTriples() {
+        return getResourceTriples().session(session)
+                .topic(translator().reverse().convert(resource()).asNode());
     }
 
     @Override
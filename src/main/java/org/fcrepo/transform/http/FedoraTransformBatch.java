@@ -0,0 +1,160 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.http;
+
+import static com.fasterxml.jackson.core.JsonGenerator.Feature.AUTO_CLOSE_TARGET;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
+import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
+import static org.fcrepo.transform.http.responses.LDPathEvaluationProvider.APPLICATION_SMILE;
+import static org.fcrepo.transform.http.responses.LDPathEvaluationProvider.APPLICATION_SMILE_TYPE;
+import static org.fcrepo.transform.http.responses.LDPathEvaluationProvider.factory;
+import static org.fcrepo.transform.http.responses.SubtreeStreamingOutput.APPLICATION_NDJSON;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import javax.jcr.RepositoryException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.container.ResourceContext;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.commons.io.IOUtils;
+import org.fcrepo.transform.http.responses.LDPathEvaluationProvider;
+import org.slf4j.Logger;
+import org.springframework.context.annotation.Scope;
+
+import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+/**
+ * Endpoint for applying one stored LDPath program to many resources in a
+ * single request, e.g. while reindexing.
+ *
+ * @author agent
+ */
+@Scope("request")
+@Path("/fcr:transform/{program}")
+public class FedoraTransformBatch {
+
+    private static final Logger LOGGER = getLogger(FedoraTransformBatch.class);
+
+    @Context
+    protected ResourceContext resourceContext;
+
+    @PathParam("program") protected String program;
+
+    /**
+     * Execute an LDpath program against each of the given resources. The request
+     * body lists one repository path per line; the response holds one JSON
+     * document per line, in the same order, each written as soon as it is ready.
+     * A resource that can't be transformed gets an error document instead.
+     *
+     * @param requestBodyStream the request body stream
+     * @return the results as newline-delimited JSON
+     * @throws IOException if IO exception occurred
+     */
+    @POST
+    @Consumes({TEXT_PLAIN})
+    @Produces({APPLICATION_NDJSON})
+    @Timed
+    public StreamingOutput evaluateLdpathProgram(final InputStream requestBodyStream) throws IOException {
+        final List<String> paths = readPaths(requestBodyStream);
+
+        LOGGER.info("POST batch transform, '{}', for {} resources", program, paths.size());
+
+        return output -> writeResults(paths, output, APPLICATION_JSON_TYPE);
+    }
+
+    /**
+     * Execute an LDpath program against each of the given resources, answering
+     * with a stream of Smile documents, one per resource, rather than lines of
+     * JSON
+     *
+     * @param requestBodyStream the request body stream
+     * @return the results as a stream of Smile documents
+     * @throws IOException if IO exception occurred
+     */
+    @POST
+    @Consumes({TEXT_PLAIN})
+    @Produces({APPLICATION_SMILE})
+    @Timed
+    public StreamingOutput evaluateLdpathProgramAsSmile(final InputStream requestBodyStream) throws IOException {
+        final List<String> paths = readPaths(requestBodyStream);
+
+        LOGGER.info("POST batch transform, '{}', for {} resources, as Smile", program, paths.size());
+
+        return output -> writeResults(paths, output, APPLICATION_SMILE_TYPE);
+    }
+
+    private static List<String> readPaths(final InputStream requestBodyStream) throws IOException {
+        return IOUtils.readLines(requestBodyStream, UTF_8).stream()
+                .map(String::trim).filter(path -> !path.isEmpty()).collect(toList());
+    }
+
+    private void writeResults(final List<String> paths, final OutputStream output, final MediaType mediaType)
+            throws IOException {
+        try (final JsonGenerator generator = factory(mediaType).createGenerator(output)) {
+            generator.disable(AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            for (final String path : paths) {
+                // evaluate the whole result before writing any of it, so a field that fails
+                // part-way through becomes an error line rather than a truncated object
+                final TokenBuffer result = new TokenBuffer(generator.getCodec(), false);
+                try {
+                    LDPathEvaluationProvider.write(
+                            FedoraTransform.forPath(resourceContext, path).bindLdpathProgram(program), result);
+                } catch (final RepositoryException | RuntimeException e) {
+                    LOGGER.debug("Unable to transform '{}' with '{}'", path, program, e);
+                    generator.writeStartObject();
+                    generator.writeStringField("path", path);
+                    generator.writeStringField("error", String.valueOf(e.getMessage()));
+                    generator.writeEndObject();
+                    endLine(generator);
+                    continue;
+                }
+
+                generator.writeStartObject();
+                generator.writeStringField("path", path);
+                generator.writeFieldName("result");
+                result.serialize(generator);
+                generator.writeEndObject();
+                endLine(generator);
+            }
+        }
+    }
+
+    private static void endLine(final JsonGenerator generator) throws IOException {
+        // Smile documents delimit themselves, and have no room for a raw newline
+        if (!(generator instanceof SmileGenerator)) {
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+    }
+}
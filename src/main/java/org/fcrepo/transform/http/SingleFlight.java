@@ -0,0 +1,117 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.http;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Coalesces concurrent identical computations: while one caller computes the
+ * value for a key, any others asking for the same key share its result, or its
+ * failure, rather than computing it again. Nothing is kept once the
+ * computation finishes.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ * @author agent
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+    private final Meter coalesced = new Meter();
+
+    /**
+     * Get the value for a key, starting its computation on an executor unless
+     * an identical computation is already under way. Callers sharing another's
+     * computation are handed its future, so none of them holds a thread while
+     * it waits, and only the caller that starts the computation prepares it.
+     * @param key the key
+     * @param executor runs the computation
+     * @param preparation run on the caller's thread if it starts the computation, returning the computation
+     * @return the value, once computed
+     */
+    public CompletableFuture<V> get(final K key, final Executor executor,
+            final Supplier<? extends Supplier<V>> preparation) {
+        final CompletableFuture<V> call = new CompletableFuture<>();
+        final CompletableFuture<V> existing = calls.putIfAbsent(key, call);
+        if (existing != null) {
+            coalesced.mark();
+            return existing;
+        }
+
+        final Supplier<V> computation;
+        try {
+            computation = preparation.get();
+        } catch (final RuntimeException | Error e) {
+            calls.remove(key, call);
+            call.completeExceptionally(e);
+            return call;
+        }
+        try {
+            executor.execute(() -> {
+                final V value;
+                try {
+                    value = computation.get();
+                } catch (final RuntimeException | Error e) {
+                    calls.remove(key, call);
+                    call.completeExceptionally(e);
+                    return;
+                }
+                calls.remove(key, call);
+                call.complete(value);
+            });
+        } catch (final RejectedExecutionException e) {
+            calls.remove(key, call);
+            call.completeExceptionally(e);
+        }
+        return call;
+    }
+
+    /**
+     * @return the number of computations under way
+     */
+    public int inFlight() {
+        return calls.size();
+    }
+
+    /**
+     * @return the number of callers that shared another's computation
+     */
+    public long coalescedCount() {
+        return coalesced.getCount();
+    }
+
+    /**
+     * Publish the coalescing to a metrics registry
+     * @param registry the registry
+     * @param prefix the prefix of the metric names
+     */
+    public void registerMetrics(final MetricRegistry registry, final String prefix) {
+        registry.register(name(prefix, "inFlight"), (Gauge<Integer>) this::inFlight);
+        registry.register(name(prefix, "coalesced"), coalesced);
+    }
+}
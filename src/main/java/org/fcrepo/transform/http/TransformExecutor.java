@@ -0,0 +1,159 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.http;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static javax.ws.rs.core.HttpHeaders.RETRY_AFTER;
+import static javax.ws.rs.core.MediaType.TEXT_PLAIN_TYPE;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import static javax.ws.rs.core.Response.status;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Function;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+
+import org.slf4j.Logger;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A bounded pool of threads on which transforms are evaluated, so that
+ * expensive transforms queue among themselves rather than occupying the
+ * container's request threads. When both the threads and the queue are full,
+ * further transforms are refused with 503 and a Retry-After header.
+ *
+ * @author agent
+ */
+public class TransformExecutor implements Executor {
+
+    private static final Logger LOGGER = getLogger(TransformExecutor.class);
+
+    private final ThreadPoolExecutor executor;
+
+    private final long retryAfterSeconds;
+
+    private final Meter rejected = new Meter();
+
+    private final Timer latency = new Timer();
+
+    /**
+     * Create a new executor
+     * @param threads the number of transforms evaluated at once
+     * @param queueSize the number of transforms that may wait for a thread
+     * @param retryAfterSeconds how long refused clients are asked to wait before retrying
+     */
+    public TransformExecutor(final int threads, final int queueSize, final long retryAfterSeconds) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, SECONDS, new ArrayBlockingQueue<>(queueSize),
+                new ThreadFactoryBuilder().setNameFormat("fcrepo-transform-%d").setDaemon(true).build());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Start a transform whose evaluation may be shared with others, resuming
+     * the suspended response once it completes, or with 503 if there is no
+     * room for it. No thread is held while the response waits for an
+     * evaluation under way elsewhere. The time from submission to resumption
+     * is recorded as the transform's latency.
+     * @param response the suspended response
+     * @param evaluation starts the evaluation on the given executor, producing the response entity
+     */
+    public void submit(final AsyncResponse response,
+            final Function<Executor, ? extends CompletableFuture<?>> evaluation) {
+        final Timer.Context submitted = latency.time();
+        final CompletableFuture<?> result;
+        try {
+            result = evaluation.apply(this);
+        } catch (final RejectedExecutionException e) {
+            submitted.stop();
+            response.resume(refusal());
+            return;
+        }
+        result.whenComplete((entity, failure) -> {
+            submitted.stop();
+            if (failure == null) {
+                response.resume(entity);
+                return;
+            }
+            final Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+            response.resume(cause instanceof RejectedExecutionException ? refusal() : cause);
+        });
+    }
+
+    /**
+     * Run a task on one of this executor's threads
+     * @param task the task
+     * @throws RejectedExecutionException if both the threads and the queue are full
+     */
+    @Override
+    public void execute(final Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (final RejectedExecutionException e) {
+            rejected.mark();
+            LOGGER.warn("Refusing a transform: {} are being evaluated and {} are waiting",
+                    executor.getActiveCount(), executor.getQueue().size());
+            throw e;
+        }
+    }
+
+    /**
+     * @return the response to a transform there is no room for
+     */
+    private Response refusal() {
+        return status(SERVICE_UNAVAILABLE).header(RETRY_AFTER, retryAfterSeconds).type(TEXT_PLAIN_TYPE)
+                .entity("Too many transforms are being evaluated; try again later").build();
+    }
+
+    /**
+     * @return the number of transforms being evaluated
+     */
+    public int activeCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return the number of transforms waiting for a thread
+     */
+    public int queuedCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Publish the executor's load to a metrics registry
+     * @param registry the registry
+     * @param prefix the prefix of the metric names
+     */
+    public void registerMetrics(final MetricRegistry registry, final String prefix) {
+        registry.register(name(prefix, "active"), (Gauge<Integer>) this::activeCount);
+        registry.register(name(prefix, "queued"), (Gauge<Integer>) this::queuedCount);
+        registry.register(name(prefix, "rejected"), rejected);
+        registry.register(name(prefix, "latency"), latency);
+    }
+}
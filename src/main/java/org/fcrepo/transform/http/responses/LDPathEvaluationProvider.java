@@ -0,0 +1,133 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.http.responses;
+
+import static com.fasterxml.jackson.core.JsonGenerator.Feature.AUTO_CLOSE_TARGET;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import org.fcrepo.transform.transformations.LDPathEvaluation;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Stream the results of an LDPath program as JSON, or as Smile, its compact
+ * binary equivalent, writing each field as soon as it has been evaluated.
+ * Typed values such as numbers and dates are written natively in both.
+ *
+ * @author agent
+ */
+@Provider
+@Component
+@Produces({APPLICATION_JSON, LDPathEvaluationProvider.APPLICATION_SMILE})
+public class LDPathEvaluationProvider implements MessageBodyWriter<LDPathEvaluation> {
+
+    private static final Logger LOGGER = getLogger(LDPathEvaluationProvider.class);
+
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+
+    public static final MediaType APPLICATION_SMILE_TYPE = MediaType.valueOf(APPLICATION_SMILE);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+
+    @Override
+    public boolean isWriteable(final Class<?> type, final Type genericType,
+            final Annotation[] annotations, final MediaType mediaType) {
+        return LDPathEvaluation.class.isAssignableFrom(type) && (APPLICATION_JSON_TYPE.isCompatible(mediaType)
+                || APPLICATION_SMILE_TYPE.isCompatible(mediaType));
+    }
+
+    @Override
+    public long getSize(final LDPathEvaluation evaluation, final Class<?> type,
+            final Type genericType, final Annotation[] annotations,
+            final MediaType mediaType) {
+        // we don't know in advance how large the result might be
+        return -1;
+    }
+
+    @Override
+    public void writeTo(final LDPathEvaluation evaluation, final Class<?> type,
+            final Type genericType, final Annotation[] annotations,
+            final MediaType mediaType,
+            final MultivaluedMap<String, Object> httpHeaders,
+            final OutputStream entityStream) throws IOException {
+
+        LOGGER.debug("Writing LDPath results with MIMEtype: {}", mediaType);
+
+        try (final JsonGenerator generator = factory(mediaType).createGenerator(entityStream)) {
+            generator.disable(AUTO_CLOSE_TARGET);
+            write(evaluation, generator);
+        }
+    }
+
+    /**
+     * Choose the generator factory for a media type
+     * @param mediaType the media type of the response
+     * @return a Smile factory for Smile, otherwise a JSON factory
+     */
+    public static JsonFactory factory(final MediaType mediaType) {
+        return isSmile(mediaType) ? SMILE_MAPPER.getFactory() : MAPPER.getFactory();
+    }
+
+    /**
+     * @param mediaType a media type
+     * @return whether the media type is Smile, as opposed to a wildcard
+     */
+    public static boolean isSmile(final MediaType mediaType) {
+        return mediaType != null && APPLICATION_SMILE_TYPE.getType().equals(mediaType.getType())
+                && APPLICATION_SMILE_TYPE.getSubtype().equals(mediaType.getSubtype());
+    }
+
+    /**
+     * Write an evaluation as a one-element array of field name to values, the
+     * shape LDPath results have always been served in
+     * @param evaluation the bound program
+     * @param generator the generator to write to
+     * @throws IOException if IO exception occurred
+     */
+    public static void write(final LDPathEvaluation evaluation, final JsonGenerator generator) throws IOException {
+        generator.writeStartArray();
+        generator.writeStartObject();
+        evaluation.forEachField((fieldName, values) -> {
+            generator.writeArrayFieldStart(fieldName);
+            for (final Object value : values) {
+                generator.writeObject(value);
+            }
+            generator.writeEndArray();
+        });
+        generator.writeEndObject();
+        generator.writeEndArray();
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.http.responses;
+
+import static com.fasterxml.jackson.core.JsonGenerator.Feature.AUTO_CLOSE_TARGET;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
+import static org.fcrepo.transform.http.responses.LDPathEvaluationProvider.APPLICATION_SMILE_TYPE;
+import static org.fcrepo.transform.http.responses.LDPathEvaluationProvider.factory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import org.fcrepo.transform.transformations.LDPathEvaluation;
+import org.fcrepo.transform.transformations.LDPathEvaluations;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Stream the results of several LDPath programs as one JSON or Smile object,
+ * keyed by program, each program's result in the shape it has on its own.
+ *
+ * @author agent
+ */
+@Provider
+@Component
+@Produces({APPLICATION_JSON, LDPathEvaluationProvider.APPLICATION_SMILE})
+public class LDPathEvaluationsProvider implements MessageBodyWriter<LDPathEvaluations> {
+
+    @Override
+    public boolean isWriteable(final Class<?> type, final Type genericType,
+            final Annotation[] annotations, final MediaType mediaType) {
+        return LDPathEvaluations.class.isAssignableFrom(type) && (APPLICATION_JSON_TYPE.isCompatible(mediaType)
+                || APPLICATION_SMILE_TYPE.isCompatible(mediaType));
+    }
+
+    @Override
+    public long getSize(final LDPathEvaluations evaluations, final Class<?> type,
+            final Type genericType, final Annotation[] annotations,
+            final MediaType mediaType) {
+        // we don't know in advance how large the result might be
+        return -1;
+    }
+
+    @Override
+    public void writeTo(final LDPathEvaluations evaluations, final Class<?> type,
+            final Type genericType, final Annotation[] annotations,
+            final MediaType mediaType,
+            final MultivaluedMap<String, Object> httpHeaders,
+            final OutputStream entityStream) throws IOException {
+
+        try (final JsonGenerator generator = factory(mediaType).createGenerator(entityStream)) {
+            generator.disable(AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            for (final Map.Entry<String, LDPathEvaluation> evaluation : evaluations.evaluations().entrySet()) {
+                generator.writeFieldName(evaluation.getKey());
+                LDPathEvaluationProvider.write(evaluation.getValue(), generator);
+            }
+            generator.writeEndObject();
+        }
+    }
+}
@@ -15,25 +15,55 @@
  */
 package org.fcrepo.transform.http.responses;
 
+import static com.hp.hpl.jena.query.ResultSetFormatter.outputAsCSV;
+import static com.hp.hpl.jena.query.ResultSetFormatter.outputAsJSON;
+import static com.hp.hpl.jena.query.ResultSetFormatter.outputAsTSV;
+import static com.hp.hpl.jena.query.ResultSetFormatter.outputAsXML;
+import static com.hp.hpl.jena.sparql.graph.GraphFactory.createDefaultGraph;
+import static com.hp.hpl.jena.sparql.resultset.ResultsFormat.FMT_RS_CSV;
+import static com.hp.hpl.jena.sparql.resultset.ResultsFormat.FMT_RS_JSON;
+import static com.hp.hpl.jena.sparql.resultset.ResultsFormat.FMT_RS_TSV;
+import static com.hp.hpl.jena.sparql.resultset.ResultsFormat.FMT_RS_XML;
 import static com.hp.hpl.jena.sparql.resultset.ResultsFormat.FMT_UNKNOWN;
 import static java.util.Collections.singletonList;
+import static javax.ws.rs.core.MediaType.TEXT_PLAIN_TYPE;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import static javax.ws.rs.core.Response.status;
+import static org.apache.jena.riot.RDFLanguages.contentTypeToLang;
+import static org.apache.jena.riot.system.StreamRDFWriter.getWriterStream;
 import static org.fcrepo.transform.http.responses.ResultSetStreamingOutput.getResultsFormat;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.Map;
 
+import javax.ws.rs.NotAcceptableException;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
 
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
 import org.slf4j.Logger;
 import org.springframework.stereotype.Component;
 
+import com.google.common.collect.ImmutableMap;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryCancelledException;
 import com.hp.hpl.jena.query.QueryExecution;
 import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.sparql.resultset.ResultsFormat;
 
 /**
  * Helper for writing QueryExecutions results out in a variety
@@ -47,6 +77,9 @@ public class QueryExecutionProvider implements MessageBodyWriter<QueryExecution>
 
     private static final Logger LOGGER = getLogger(QueryExecutionProvider.class);
 
+    private static final Map<Lang, RDFFormat> STREAMING_FORMATS =
+            ImmutableMap.of(Lang.NTRIPLES, RDFFormat.NTRIPLES, Lang.TURTLE, RDFFormat.TURTLE_BLOCKS);
+
     private static final ResultSetStreamingOutput resultSetStreamingOutput = new ResultSetStreamingOutput();
 
     @Override
@@ -62,23 +95,116 @@ public class QueryExecutionProvider implements MessageBodyWriter<QueryExecution>
         // add standard headers
         httpHeaders.put("Content-type", singletonList(mediaType.toString()));
 
+        final AbortingOutputStream output = new AbortingOutputStream(entityStream, qexec);
         try {
+            final Query query = qexec.getQuery();
+            if (query != null && (query.isConstructType() || query.isDescribeType())) {
+                writeGraph(qexec, query, mediaType, output);
+                return;
+            }
+            if (query != null && query.isAskType()) {
+                writeBoolean(qexec.execAsk(), mediaType, output);
+                return;
+            }
+
             final ResultSet resultSet = qexec.execSelect();
+            // the serializers write their header before the first solution, so find it before anything is
+            // written; a query that runs out of time before producing one can then still be answered with 503
+            resultSet.hasNext();
 
             resultSetStreamingOutput.writeTo(resultSet, type, genericType,
-                    annotations, mediaType, httpHeaders, entityStream);
+                    annotations, mediaType, httpHeaders, output);
+        } catch (final QueryCancelledException e) {
+            LOGGER.warn("Query execution was cancelled after writing {} bytes", output.getByteCount());
+            if (output.getByteCount() == 0) {
+                throw new WebApplicationException(e, status(SERVICE_UNAVAILABLE).type(TEXT_PLAIN_TYPE)
+                        .entity("Query execution exceeded its time limit").build());
+            }
+            throw e;
         } finally {
             qexec.close();
         }
     }
 
+    /**
+     * Write the answer to an ASK query directly, without building a result set
+     */
+    private static void writeBoolean(final boolean answer, final MediaType mediaType, final OutputStream output) {
+        final ResultsFormat format = getResultsFormat(mediaType);
+        if (format == FMT_RS_JSON) {
+            outputAsJSON(output, answer);
+        } else if (format == FMT_RS_XML) {
+            outputAsXML(output, answer);
+        } else if (format == FMT_RS_CSV) {
+            outputAsCSV(output, answer);
+        } else if (format == FMT_RS_TSV) {
+            outputAsTSV(output, answer);
+        } else {
+            throw new NotAcceptableException("ASK results can only be written as SPARQL JSON, XML, CSV or TSV");
+        }
+    }
+
+    /**
+     * Write the triples of a CONSTRUCT or DESCRIBE query as they are produced.
+     * Line- and block-oriented serializations are streamed; others, e.g.
+     * RDF/XML, need the whole graph and are written from one. Streamed output
+     * may repeat a triple that the template produces for more than one solution.
+     */
+    private static void writeGraph(final QueryExecution qexec, final Query query, final MediaType mediaType,
+            final OutputStream output) {
+        final Lang lang = contentTypeToLang(mediaType.getType() + "/" + mediaType.getSubtype());
+        if (lang == null) {
+            throw new NotAcceptableException("CONSTRUCT and DESCRIBE results can only be written as RDF");
+        }
+
+        final Iterator<Triple> triples =
+                query.isConstructType() ? qexec.execConstructTriples() : qexec.execDescribeTriples();
+        // as for solutions, find the first triple before anything is written
+        triples.hasNext();
+        final RDFFormat streamingFormat = STREAMING_FORMATS.get(lang);
+        if (streamingFormat == null) {
+            final Graph graph = createDefaultGraph();
+            graph.getPrefixMapping().setNsPrefixes(query.getPrefixMapping());
+            triples.forEachRemaining(graph::add);
+            RDFDataMgr.write(output, graph, lang);
+            return;
+        }
+
+        final StreamRDF stream = getWriterStream(output, streamingFormat);
+        stream.start();
+        query.getPrefixMapping().getNsPrefixMap().forEach(stream::prefix);
+        triples.forEachRemaining(stream::triple);
+        stream.finish();
+    }
+
+    /**
+     * Aborts the query execution when the client can no longer be written to,
+     * e.g. because it has gone away, so the query doesn't run on for nobody
+     */
+    private static class AbortingOutputStream extends CountingOutputStream {
+
+        private final QueryExecution qexec;
+
+        private AbortingOutputStream(final OutputStream out, final QueryExecution qexec) {
+            super(out);
+            this.qexec = qexec;
+        }
+
+        @Override
+        protected void handleIOException(final IOException e) throws IOException {
+            LOGGER.debug("Aborting query execution after failing to write results", e);
+            qexec.abort();
+            throw e;
+        }
+    }
+
     @Override
     public boolean isWriteable(final Class<?> type, final Type genericType,
             final Annotation[] annotations, final MediaType mediaType) {
 
         // we can return a result for any MIME type that Jena can serialize
-        final Boolean appropriateResultType =
-            getResultsFormat(mediaType) != FMT_UNKNOWN;
+        final Boolean appropriateResultType = getResultsFormat(mediaType) != FMT_UNKNOWN
+                || contentTypeToLang(mediaType.getType() + "/" + mediaType.getSubtype()) != null;
         return appropriateResultType
                 && (QueryExecution.class.isAssignableFrom(type) || QueryExecution.class
                         .isAssignableFrom(genericType.getClass()));
@@ -0,0 +1,288 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.http.responses;
+
+import static com.fasterxml.jackson.core.JsonGenerator.Feature.AUTO_CLOSE_TARGET;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.jena.riot.RDFFormat.JSONLD;
+import static org.fcrepo.kernel.api.FedoraJcrTypes.FEDORA_PAIRTREE;
+import static org.fcrepo.kernel.api.FedoraJcrTypes.FEDORA_RESOURCE;
+import static org.fcrepo.kernel.api.FedoraJcrTypes.FEDORA_TOMBSTONE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.jena.riot.RDFDataMgr;
+import org.fcrepo.transform.transformations.LDPathEvaluation;
+import org.slf4j.Logger;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.ResultSetFormatter;
+
+/**
+ * Stream the result of a transform over a resource and its descendants as
+ * newline-delimited JSON, one document per resource, in completion order.
+ *
+ * The repository is traversed, and each resource's triples gathered, on the
+ * writing thread, which owns the request's session; the transforms themselves
+ * run on a shared fork/join pool over the gathered triples.
+ *
+ * @author agent
+ */
+public class SubtreeStreamingOutput implements StreamingOutput {
+
+    private static final Logger LOGGER = getLogger(SubtreeStreamingOutput.class);
+
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    public static final String PARALLELISM = "fcrepo.transform.subtree.parallelism";
+
+    public static final String MAX_PENDING = "fcrepo.transform.subtree.pending";
+
+    private static final int POOL_PARALLELISM = Integer.getInteger(PARALLELISM,
+            Runtime.getRuntime().availableProcessors());
+
+    private static final int POOL_PENDING = Integer.getInteger(MAX_PENDING, 4 * POOL_PARALLELISM);
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(POOL_PARALLELISM);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Node root;
+
+    private final int maxDepth;
+
+    private final ResourceTransform transform;
+
+    /**
+     * Prepares the transform of a single resource
+     */
+    @FunctionalInterface
+    public interface ResourceTransform {
+
+        /**
+         * Gather what the transform needs from the repository, returning the
+         * remaining work, which must not touch the repository
+         * @param path the repository path of the resource
+         * @return the transform of the resource, producing a JSON value
+         * @throws RepositoryException if repository exception occurred
+         */
+        Callable<String> prepare(String path) throws RepositoryException;
+    }
+
+    /**
+     * Transform a resource and its descendants
+     * @param root the node of the top-most resource
+     * @param maxDepth the depth to descend to below the root, or a negative value for no limit
+     * @param transform prepares the transform of each resource
+     */
+    public SubtreeStreamingOutput(final Node root, final int maxDepth, final ResourceTransform transform) {
+        this.root = root;
+        this.maxDepth = maxDepth < 0 ? Integer.MAX_VALUE : maxDepth;
+        this.transform = transform;
+    }
+
+    @Override
+    public void write(final OutputStream output) throws IOException {
+        try (final JsonGenerator generator = MAPPER.getFactory().createGenerator(output)) {
+            generator.disable(AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            final CompletionService<String> completions = new ExecutorCompletionService<>(POOL);
+            final Deque<Level> levels = new ArrayDeque<>();
+            int pending = 0;
+
+            try {
+                pending += submit(root.getPath(), completions, generator);
+                if (maxDepth > 0) {
+                    levels.push(new Level(root.getNodes(), 1));
+                }
+
+                while (!levels.isEmpty()) {
+                    final Level level = levels.peek();
+                    if (!level.nodes.hasNext()) {
+                        levels.pop();
+                        continue;
+                    }
+
+                    final Node node = level.nodes.nextNode();
+                    if (node.getName().startsWith("jcr:") || node.getName().equals("#")
+                            || node.isNodeType(FEDORA_TOMBSTONE)) {
+                        continue;
+                    }
+                    if (node.isNodeType(FEDORA_PAIRTREE)) {
+                        // pairtree nodes are an artifact of storage, not part of the hierarchy
+                        levels.push(new Level(node.getNodes(), level.depth));
+                        continue;
+                    }
+                    if (!node.isNodeType(FEDORA_RESOURCE)) {
+                        continue;
+                    }
+
+                    pending += submit(node.getPath(), completions, generator);
+                    if (level.depth < maxDepth) {
+                        levels.push(new Level(node.getNodes(), level.depth + 1));
+                    }
+
+                    for (; pending >= POOL_PENDING; pending--) {
+                        writeResult(completions.take(), generator);
+                    }
+                    for (Future<String> done = completions.poll(); done != null; done = completions.poll()) {
+                        writeResult(done, generator);
+                        pending--;
+                    }
+                }
+
+                for (; pending > 0; pending--) {
+                    writeResult(completions.take(), generator);
+                }
+            } catch (final RepositoryException e) {
+                throw new IOException(e);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.getMessage());
+            }
+        }
+    }
+
+    private int submit(final String path, final CompletionService<String> completions,
+            final JsonGenerator generator) throws IOException {
+        final Callable<String> task;
+        try {
+            task = transform.prepare(path);
+        } catch (final RepositoryException | RuntimeException e) {
+            LOGGER.debug("Unable to transform '{}'", path, e);
+            writeLine(generator, path, null, e);
+            return 0;
+        }
+        completions.submit(() -> line(path, task));
+        return 1;
+    }
+
+    private static String line(final String path, final Callable<String> task) throws IOException {
+        final StringWriter writer = new StringWriter();
+        try (final JsonGenerator generator = MAPPER.getFactory().createGenerator(writer)) {
+            String result = null;
+            Exception error = null;
+            try {
+                result = task.call();
+            } catch (final Exception e) {
+                LOGGER.debug("Unable to transform '{}'", path, e);
+                error = e;
+            }
+            writeLine(generator, path, result, error);
+        }
+        return writer.toString();
+    }
+
+    private static void writeResult(final Future<String> done, final JsonGenerator generator) throws IOException,
+            InterruptedException {
+        try {
+            generator.writeRaw(done.get());
+            generator.flush();
+        } catch (final ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static void writeLine(final JsonGenerator generator, final String path, final String result,
+            final Exception error) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("path", path);
+        if (error == null) {
+            generator.writeFieldName("result");
+            generator.writeRawValue(result);
+        } else {
+            generator.writeStringField("error", String.valueOf(error.getMessage()));
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+
+    /**
+     * Evaluate a bound LDPath program as JSON
+     * @param evaluation the bound program
+     * @return the evaluation, in the shape of the single-resource endpoint
+     */
+    public static Callable<String> ldpathResult(final LDPathEvaluation evaluation) {
+        return () -> {
+            final StringWriter writer = new StringWriter();
+            try (final JsonGenerator generator = MAPPER.getFactory().createGenerator(writer)) {
+                LDPathEvaluationProvider.write(evaluation, generator);
+            }
+            return writer.toString();
+        };
+    }
+
+    /**
+     * Execute a SPARQL query as JSON: SPARQL JSON results for SELECT and ASK
+     * queries, JSON-LD for CONSTRUCT and DESCRIBE queries
+     * @param execution the query execution
+     * @return the execution
+     */
+    public static Callable<String> sparqlResult(final QueryExecution execution) {
+        return () -> {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                if (execution.getQuery().isSelectType()) {
+                    ResultSetFormatter.outputAsJSON(out, execution.execSelect());
+                } else if (execution.getQuery().isAskType()) {
+                    ResultSetFormatter.outputAsJSON(out, execution.execAsk());
+                } else if (execution.getQuery().isConstructType()) {
+                    RDFDataMgr.write(out, execution.execConstruct(), JSONLD);
+                } else {
+                    RDFDataMgr.write(out, execution.execDescribe(), JSONLD);
+                }
+            } finally {
+                execution.close();
+            }
+            // compact the formatters' pretty-printed output onto a single line
+            return MAPPER.readTree(out.toString(UTF_8.name())).toString();
+        };
+    }
+
+    private static class Level {
+
+        private final NodeIterator nodes;
+
+        private final int depth;
+
+        private Level(final NodeIterator nodes, final int depth) {
+            this.nodes = nodes;
+            this.depth = depth;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.http.responses;
+
+import static java.lang.System.nanoTime;
+import static org.fcrepo.transform.TransformMetrics.METRICS_PREFIX;
+import static org.fcrepo.transform.TransformMetrics.recordWrite;
+
+import java.io.IOException;
+
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Times the writing of transform responses, for requests that have been
+ * tagged with a metric prefix.
+ *
+ * @author agent
+ */
+@Provider
+@Component
+public class TransformMetricsInterceptor implements WriterInterceptor {
+
+    @Override
+    public void aroundWriteTo(final WriterInterceptorContext context) throws IOException {
+        final Object prefix = context.getProperty(METRICS_PREFIX);
+        if (prefix == null) {
+            context.proceed();
+            return;
+        }
+
+        final long start = nanoTime();
+        context.proceed();
+        recordWrite(prefix.toString(), context.getMediaType(), context.getEntity(), nanoTime() - start);
+    }
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.http.responses;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Splitter.on;
+import static com.google.common.hash.Hashing.sha256;
+import static java.lang.Boolean.getBoolean;
+import static java.lang.Long.getLong;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.net.URI;
+import java.util.Set;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A cache of serialized transform results, bounded by their total size.
+ * Entries are keyed by the program, the resource, the transform's entity tag
+ * (which changes with the resource and with the program or query), the media
+ * type and the user, so a changed resource or program is simply a new key;
+ * stale entries age out, or are dropped when their program changes.
+ *
+ * Caching is enabled per stored program, and separately for POSTed queries.
+ * One cache, configured from system properties, is shared by the transform
+ * endpoint and the listener that evicts the results of changed programs.
+ *
+ * @author agent
+ */
+public class TransformResultCache {
+
+    /**
+     * System property setting the combined size, in bytes, of the cached transform results
+     */
+    public static final String CACHE_BYTES = "fcrepo.transform.cache.bytes";
+
+    /**
+     * System property listing, comma-separated, the stored programs whose results are cached
+     */
+    public static final String CACHE_PROGRAMS = "fcrepo.transform.cache.programs";
+
+    /**
+     * System property enabling the caching of POSTed SPARQL query results
+     */
+    public static final String CACHE_QUERIES = "fcrepo.transform.cache.queries";
+
+    private static final long DEFAULT_CACHE_BYTES = 32L * 1024 * 1024;
+
+    private static final TransformResultCache SHARED = new TransformResultCache(
+            getLong(CACHE_BYTES, DEFAULT_CACHE_BYTES),
+            ImmutableSet.copyOf(on(',').trimResults().omitEmptyStrings()
+                    .split(System.getProperty(CACHE_PROGRAMS, ""))),
+            getBoolean(CACHE_QUERIES));
+
+    private final Cache<String, byte[]> results;
+
+    private final Set<String> programs;
+
+    private final boolean queries;
+
+    /**
+     * Create a new cache holding results up to the given total size
+     * @param maximumBytes the maximum combined size of the cached results
+     * @param programs the keys of the stored programs whose results are cached
+     * @param queries whether the results of POSTed queries are cached
+     */
+    public TransformResultCache(final long maximumBytes, final Set<String> programs, final boolean queries) {
+        this.results = CacheBuilder.newBuilder().maximumWeight(maximumBytes)
+                .weigher((final String key, final byte[] result) -> 2 * key.length() + result.length)
+                .recordStats().build();
+        this.programs = ImmutableSet.copyOf(programs);
+        this.queries = queries;
+    }
+
+    /**
+     * @return the cache shared by the transform endpoint and the configuration listener
+     */
+    public static TransformResultCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * The scope of the results of POSTed queries, which no stored program key can equal
+     */
+    public static final String POSTED_QUERIES = "[posted]";
+
+    /**
+     * Build the cache key for a result
+     * @param scope the stored program key, or {@link #POSTED_QUERIES}
+     * @param baseUri the base URI of the request, which the subjects of the result are under
+     * @param path the repository path of the resource
+     * @param etag the entity tag of the transform of the resource
+     * @param mediaType the media type of the serialized result
+     * @param userId the user the result was produced for
+     * @return the cache key
+     */
+    public static String resultKey(final String scope, final URI baseUri, final String path,
+            final EntityTag etag, final MediaType mediaType, final String userId) {
+        return scope + "\n" + baseUri + "\n" + path + "\n" + etag.getValue() + "\n" + mediaType + "\n" + userId;
+    }
+
+    /**
+     * Compute the strong entity tag of a transform of a resource
+     * @param resourceEtag the entity tag value of the resource
+     * @param transformVersion the version of the program or query
+     * @param preference the triples the client asked to have transformed, or null
+     * @return an entity tag that changes whenever the resource, the program or the preference does
+     */
+    public static EntityTag transformTag(final String resourceEtag, final String transformVersion,
+            final String preference) {
+        return new EntityTag(sha256().hashString(resourceEtag + "/" + transformVersion
+                + (preference == null ? "" : "/" + preference), UTF_8).toString());
+    }
+
+    /**
+     * @param program a stored program key
+     * @return whether the results of the program are cached
+     */
+    public boolean isEnabled(final String program) {
+        return programs.contains(program);
+    }
+
+    /**
+     * @return whether the results of POSTed queries are cached
+     */
+    public boolean isEnabledForQueries() {
+        return queries;
+    }
+
+    /**
+     * Get a cached result
+     * @param key the cache key
+     * @return the serialized result, or null if it isn't cached
+     */
+    public byte[] get(final String key) {
+        return results.getIfPresent(key);
+    }
+
+    /**
+     * Cache a result
+     * @param key the cache key
+     * @param result the serialized result
+     */
+    public void put(final String key, final byte[] result) {
+        results.put(key, result);
+    }
+
+    /**
+     * Drop the cached results of one stored program
+     * @param program the program key
+     */
+    public void invalidate(final String program) {
+        results.asMap().keySet().removeIf(key -> key.startsWith(program + "\n"));
+    }
+
+    /**
+     * Drop every cached result
+     */
+    public void invalidateAll() {
+        results.invalidateAll();
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public long hitCount() {
+        return results.stats().hitCount();
+    }
+
+    /**
+     * @return the number of lookups that required the transform to be run
+     */
+    public long missCount() {
+        return results.stats().missCount();
+    }
+
+    /**
+     * @return the number of results evicted to stay within the size bound
+     */
+    public long evictionCount() {
+        return results.stats().evictionCount();
+    }
+
+    /**
+     * @return the number of results currently held
+     */
+    public long size() {
+        return results.size();
+    }
+
+    /**
+     * Publish the counters of this cache as gauges
+     * @param registry the metric registry
+     * @param prefix the metric name prefix
+     */
+    public void registerMetrics(final MetricRegistry registry, final String prefix) {
+        registry.register(name(prefix, "hits"), (Gauge<Long>) this::hitCount);
+        registry.register(name(prefix, "misses"), (Gauge<Long>) this::missCount);
+        registry.register(name(prefix, "evictions"), (Gauge<Long>) this::evictionCount);
+        registry.register(name(prefix, "size"), (Gauge<Long>) this::size);
+    }
+}
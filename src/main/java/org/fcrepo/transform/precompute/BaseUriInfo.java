@@ -0,0 +1,140 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.precompute;
+
+import static java.util.Collections.emptyList;
+
+import java.net.URI;
+import java.util.List;
+
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.PathSegment;
+import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.UriInfo;
+
+/**
+ * The URI information of a request made to the base URI of the repository
+ * and nothing beyond it, for addressing resources outside of any request.
+ *
+ * @author agent
+ */
+class BaseUriInfo implements UriInfo {
+
+    private final URI baseUri;
+
+    /**
+     * @param baseUri the base URI of the repository's resources
+     */
+    BaseUriInfo(final URI baseUri) {
+        this.baseUri = baseUri;
+    }
+
+    @Override
+    public String getPath() {
+        return "";
+    }
+
+    @Override
+    public String getPath(final boolean decode) {
+        return getPath();
+    }
+
+    @Override
+    public List<PathSegment> getPathSegments() {
+        return emptyList();
+    }
+
+    @Override
+    public List<PathSegment> getPathSegments(final boolean decode) {
+        return getPathSegments();
+    }
+
+    @Override
+    public URI getRequestUri() {
+        return baseUri;
+    }
+
+    @Override
+    public UriBuilder getRequestUriBuilder() {
+        return UriBuilder.fromUri(baseUri);
+    }
+
+    @Override
+    public URI getAbsolutePath() {
+        return baseUri;
+    }
+
+    @Override
+    public UriBuilder getAbsolutePathBuilder() {
+        return UriBuilder.fromUri(baseUri);
+    }
+
+    @Override
+    public URI getBaseUri() {
+        return baseUri;
+    }
+
+    @Override
+    public UriBuilder getBaseUriBuilder() {
+        return UriBuilder.fromUri(baseUri);
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getPathParameters() {
+        return new MultivaluedHashMap<>();
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getPathParameters(final boolean decode) {
+        return getPathParameters();
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getQueryParameters() {
+        return new MultivaluedHashMap<>();
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getQueryParameters(final boolean decode) {
+        return getQueryParameters();
+    }
+
+    @Override
+    public List<String> getMatchedURIs() {
+        return emptyList();
+    }
+
+    @Override
+    public List<String> getMatchedURIs(final boolean decode) {
+        return getMatchedURIs();
+    }
+
+    @Override
+    public List<Object> getMatchedResources() {
+        return emptyList();
+    }
+
+    @Override
+    public URI resolve(final URI uri) {
+        return baseUri.resolve(uri);
+    }
+
+    @Override
+    public URI relativize(final URI uri) {
+        return baseUri.relativize(uri);
+    }
+}
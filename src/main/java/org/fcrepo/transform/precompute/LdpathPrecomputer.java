@@ -0,0 +1,375 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.precompute;
+
+import static com.fasterxml.jackson.core.JsonGenerator.Feature.AUTO_CLOSE_TARGET;
+import static com.google.common.base.Splitter.on;
+import static java.lang.Integer.getInteger;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static javax.jcr.observation.Event.NODE_ADDED;
+import static javax.jcr.observation.Event.NODE_REMOVED;
+import static javax.jcr.observation.Event.PROPERTY_ADDED;
+import static javax.jcr.observation.Event.PROPERTY_CHANGED;
+import static javax.jcr.observation.Event.PROPERTY_REMOVED;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
+import static org.fcrepo.transform.http.responses.LDPathEvaluationProvider.factory;
+import static org.fcrepo.transform.http.responses.TransformResultCache.transformTag;
+import static org.fcrepo.transform.transformations.LDPathTransform.getNodeTypeTransform;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.UriInfo;
+
+import org.fcrepo.http.commons.api.rdf.HttpResourceConverter;
+import org.fcrepo.http.commons.api.rdf.HttpTripleUtil;
+import org.fcrepo.kernel.api.models.FedoraResource;
+import org.fcrepo.transform.http.FedoraTransform;
+import org.fcrepo.transform.http.responses.LDPathEvaluationProvider;
+import org.fcrepo.transform.transformations.LDPathEvaluation;
+import org.fcrepo.transform.transformations.LDPathTransform;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+/**
+ * Evaluates configured LDPath programs whenever a resource changes, and keeps
+ * their results in a {@link PrecomputedResultStore} from which GET requests
+ * for those programs are answered while the resource is unchanged.
+ *
+ * Changes are learned of through the repository's observation events, which
+ * are delivered in the same VM; {@link #resourceChanged(String)} is the entry
+ * point for any other source of changes. Nothing is listened for unless
+ * programs are configured.
+ *
+ * Results are evaluated through the transform endpoint, over the same
+ * triples and under the same entity tag as a GET request asking for no
+ * particular triples, so a result is only served where it is what would have
+ * been evaluated. They are stored by the resource's URI under the configured
+ * base URI, which requests made under another base URI never ask for. When
+ * HTTP triples are added to representations, which can't be added here,
+ * programs reading server-managed triples aren't precomputed. Changes are
+ * dropped, and their results evaluated on request, when more are waiting than
+ * the configured queue holds.
+ *
+ * @author agent
+ */
+@Component
+public class LdpathPrecomputer implements EventListener {
+
+    private static final Logger LOGGER = getLogger(LdpathPrecomputer.class);
+
+    /**
+     * System property listing, comma-separated, the stored programs to precompute
+     */
+    public static final String PROGRAMS = "fcrepo.transform.precompute.programs";
+
+    /**
+     * System property naming the directory precomputed results are kept in, required when programs are precomputed
+     */
+    public static final String DIRECTORY = "fcrepo.transform.precompute.directory";
+
+    /**
+     * System property setting the base URI of the repository's resources, as clients address them, required when
+     * programs are precomputed
+     */
+    public static final String BASE_URI = "fcrepo.transform.precompute.baseUri";
+
+    /**
+     * System property setting how many changed resources may wait to be precomputed
+     */
+    public static final String QUEUE = "fcrepo.transform.precompute.queue";
+
+    private static final int DEFAULT_QUEUE = 10000;
+
+    private static final int EVENT_TYPES = NODE_ADDED | NODE_REMOVED | PROPERTY_ADDED | PROPERTY_CHANGED
+            | PROPERTY_REMOVED;
+
+    private static final List<String> IGNORED_PATHS = ImmutableList.of("/jcr:system", "/fedora:system");
+
+    private static final String CONTENT = "/jcr:content";
+
+    @Inject
+    private Repository repository;
+
+    @Autowired(required = false)
+    private HttpTripleUtil httpTripleUtil;
+
+    private List<String> programs;
+
+    private PrecomputedResultStore store;
+
+    private String baseUri;
+
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private ExecutorService worker;
+
+    private Session session;
+
+    /**
+     * Default constructor, configured from system properties
+     */
+    public LdpathPrecomputer() { }
+
+    /**
+     * Create a precomputer with the given configuration
+     * @param repository the repository
+     * @param programs the program keys to precompute
+     * @param store the store to keep results in
+     * @param baseUri the base URI of the repository's resources
+     */
+    @VisibleForTesting
+    LdpathPrecomputer(final Repository repository, final List<String> programs, final PrecomputedResultStore store,
+            final String baseUri) {
+        this.repository = repository;
+        this.programs = ImmutableList.copyOf(programs);
+        this.store = store;
+        this.baseUri = baseUri;
+    }
+
+    /**
+     * Start listening for changes, if any programs are to be precomputed
+     * @throws RepositoryException if repository exception occurred
+     * @throws IOException if the store can't be opened
+     */
+    @PostConstruct
+    public void register() throws RepositoryException, IOException {
+        if (programs == null) {
+            programs = ImmutableList.copyOf(on(',').trimResults().omitEmptyStrings()
+                    .split(System.getProperty(PROGRAMS, "")));
+        }
+        if (programs.isEmpty()) {
+            return;
+        }
+        if (store == null) {
+            store = new PrecomputedResultStore(Paths.get(requiredProperty(DIRECTORY)));
+        }
+        if (baseUri == null) {
+            baseUri = requiredProperty(BASE_URI);
+        }
+        worker = new ThreadPoolExecutor(1, 1, 0, MILLISECONDS, new ArrayBlockingQueue<>(getInteger(QUEUE,
+                DEFAULT_QUEUE)), new ThreadFactoryBuilder().setNameFormat("fcrepo-transform-precompute")
+                .setDaemon(true).build());
+
+        session = repository.login();
+        session.getWorkspace().getObservationManager().addEventListener(this, EVENT_TYPES, "/", true, null, null,
+                false);
+        LOGGER.info("Precomputing LDPath programs {} for resources under {}", programs, baseUri);
+    }
+
+    /**
+     * Stop listening for changes
+     * @throws RepositoryException if repository exception occurred
+     */
+    @PreDestroy
+    public void unregister() throws RepositoryException {
+        if (session == null) {
+            return;
+        }
+        worker.shutdownNow();
+        try {
+            session.getWorkspace().getObservationManager().removeEventListener(this);
+        } finally {
+            session.logout();
+        }
+    }
+
+    /**
+     * @param program a stored program key
+     * @return whether the results of the program are precomputed
+     */
+    public boolean isEnabled(final String program) {
+        return store != null && programs.contains(program);
+    }
+
+    /**
+     * Get the precomputed result of a program, if it is fresh
+     * @param subject the URI of the resource
+     * @param program the program key
+     * @param etag the current entity tag of the transform
+     * @return the serialized result, or null if there is no fresh one
+     */
+    public byte[] lookup(final String subject, final String program, final EntityTag etag) {
+        return isEnabled(program) ? store.get(subject, program, etag) : null;
+    }
+
+    @Override
+    public void onEvent(final EventIterator events) {
+        final Set<String> paths = new LinkedHashSet<>();
+        while (events.hasNext()) {
+            final Event event = events.nextEvent();
+            try {
+                final String path = resourcePath(event.getPath(), (event.getType() & (NODE_ADDED | NODE_REMOVED)) == 0);
+                if (path != null) {
+                    paths.add(path);
+                }
+            } catch (final RepositoryException e) {
+                LOGGER.warn("Could not read the path of a change event", e);
+            }
+        }
+        paths.forEach(this::resourceChanged);
+    }
+
+    /**
+     * Have the programs re-evaluated for a changed resource, once whatever
+     * changes are already waiting have been dealt with
+     * @param path the repository path of the resource
+     */
+    public void resourceChanged(final String path) {
+        if (pending.add(path)) {
+            try {
+                worker.execute(() -> {
+                    pending.remove(path);
+                    precompute(path);
+                });
+            } catch (final RejectedExecutionException e) {
+                pending.remove(path);
+                LOGGER.warn("Too many changes are waiting to be precomputed; {} will be evaluated on request", path);
+            }
+        }
+    }
+
+    /**
+     * Evaluate the programs for a resource and store their results
+     * @param path the repository path of the resource
+     */
+    @VisibleForTesting
+    void precompute(final String path) {
+        Session internal = null;
+        try {
+            internal = repository.login();
+            final HttpResourceConverter translator =
+                    new HttpResourceConverter(internal, UriBuilder.fromUri(baseUri).path("{path: .*}"));
+            final Resource subject = translator.toDomain(path);
+            if (!internal.nodeExists(path)) {
+                for (final String program : programs) {
+                    store.remove(subject.getURI(), program);
+                }
+                return;
+            }
+            final FedoraResource resource = translator.convert(subject);
+            final UriInfo uriInfo = new BaseUriInfo(URI.create(baseUri));
+
+            for (final String program : programs) {
+                final LDPathTransform transform;
+                try {
+                    transform = getNodeTypeTransform(resource.getNode(), program);
+                } catch (final WebApplicationException e) {
+                    LOGGER.trace("No program '{}' applies to {}", program, path);
+                    continue;
+                }
+                if (httpTripleUtil != null && transform.requirements().needsServerManaged()) {
+                    LOGGER.trace("'{}' reads server-managed triples, so is evaluated on request", program);
+                    continue;
+                }
+                // a new endpoint for each program, as each chooses the triples it reads
+                final EntityTag etag = transformTag(resource.getEtagValue(), transform.version(), null);
+                storeResult(subject.getURI(), program, etag,
+                        FedoraTransform.forSession(internal, uriInfo, path).bindLdpathProgram(transform));
+                LOGGER.debug("Precomputed '{}' for {}", program, path);
+            }
+        } catch (final RepositoryException | IOException | RuntimeException e) {
+            LOGGER.warn("Could not precompute the programs for {}", path, e);
+        } finally {
+            if (internal != null) {
+                internal.logout();
+            }
+        }
+    }
+
+    /**
+     * Serialize a result as a GET request for it would be answered, and store it
+     * @param subject the URI of the resource
+     * @param program the program key
+     * @param etag the entity tag of the transform
+     * @param evaluation the bound program
+     * @throws IOException if IO exception occurred
+     */
+    @VisibleForTesting
+    void storeResult(final String subject, final String program, final EntityTag etag,
+            final LDPathEvaluation evaluation) throws IOException {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (final JsonGenerator generator = factory(APPLICATION_JSON_TYPE).createGenerator(result)) {
+            generator.disable(AUTO_CLOSE_TARGET);
+            LDPathEvaluationProvider.write(evaluation, generator);
+        }
+        store.put(subject, program, etag, result.toByteArray());
+    }
+
+    /**
+     * Find the resource a change event concerns
+     * @param eventPath the path of the changed node or property
+     * @param property whether a property changed
+     * @return the repository path of the resource, or null if the change concerns no resource
+     */
+    static String resourcePath(final String eventPath, final boolean property) {
+        String path = property ? eventPath.substring(0, eventPath.lastIndexOf('/')) : eventPath;
+        final int hash = path.indexOf("/#");
+        if (hash >= 0) {
+            path = path.substring(0, hash);
+        }
+        if (path.endsWith(CONTENT)) {
+            path = path.substring(0, path.length() - CONTENT.length());
+        }
+        if (path.isEmpty()) {
+            return "/";
+        }
+        for (final String ignored : IGNORED_PATHS) {
+            if (path.equals(ignored) || path.startsWith(ignored + "/")) {
+                return null;
+            }
+        }
+        return path;
+    }
+
+    private String requiredProperty(final String property) {
+        final String value = System.getProperty(property);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalStateException(property + " must be set to precompute " + programs);
+        }
+        return value;
+    }
+}
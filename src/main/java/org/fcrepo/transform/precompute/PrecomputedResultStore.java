@@ -0,0 +1,126 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.precompute;
+
+import static com.google.common.hash.Hashing.sha256;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.write;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import javax.ws.rs.core.EntityTag;
+
+import org.slf4j.Logger;
+
+/**
+ * Serialized LDPath results kept on local disk, one file per resource and
+ * program. Each file starts with the entity tag of the transform it holds, so
+ * an entry is only served while the resource and program are unchanged;
+ * anything else is treated as absent.
+ *
+ * @author agent
+ */
+public class PrecomputedResultStore {
+
+    private static final Logger LOGGER = getLogger(PrecomputedResultStore.class);
+
+    private final Path directory;
+
+    /**
+     * Open a store, creating its directory if need be
+     * @param directory the directory holding the results
+     * @throws IOException if IO exception occurred
+     */
+    public PrecomputedResultStore(final Path directory) throws IOException {
+        this.directory = createDirectories(directory);
+    }
+
+    /**
+     * Get a stored result, if it is fresh
+     * @param subject the URI of the resource
+     * @param program the program key
+     * @param etag the current entity tag of the transform
+     * @return the serialized result, or null if none is stored for the current entity tag
+     */
+    public byte[] get(final String subject, final String program, final EntityTag etag) {
+        final byte[] entry;
+        try {
+            entry = readAllBytes(file(subject, program));
+        } catch (final NoSuchFileException e) {
+            return null;
+        } catch (final IOException e) {
+            LOGGER.warn("Could not read the precomputed result of '{}' for {}", program, subject, e);
+            return null;
+        }
+        final byte[] header = header(etag);
+        if (entry.length < header.length || !Arrays.equals(header, Arrays.copyOf(entry, header.length))) {
+            return null;
+        }
+        return Arrays.copyOfRange(entry, header.length, entry.length);
+    }
+
+    /**
+     * Store a result, replacing any earlier one atomically
+     * @param subject the URI of the resource
+     * @param program the program key
+     * @param etag the entity tag of the transform the result came from
+     * @param result the serialized result
+     * @throws IOException if IO exception occurred
+     */
+    public void put(final String subject, final String program, final EntityTag etag, final byte[] result)
+            throws IOException {
+        final ByteArrayOutputStream entry = new ByteArrayOutputStream(result.length + 72);
+        entry.write(header(etag));
+        entry.write(result);
+        final Path temporary = createTempFile(directory, "result", ".tmp");
+        try {
+            write(temporary, entry.toByteArray());
+            move(temporary, file(subject, program), ATOMIC_MOVE, REPLACE_EXISTING);
+        } finally {
+            deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Drop a stored result
+     * @param subject the URI of the resource
+     * @param program the program key
+     * @throws IOException if IO exception occurred
+     */
+    public void remove(final String subject, final String program) throws IOException {
+        deleteIfExists(file(subject, program));
+    }
+
+    private Path file(final String subject, final String program) {
+        return directory.resolve(sha256().hashString(subject + "\n" + program, UTF_8) + ".json");
+    }
+
+    private static byte[] header(final EntityTag etag) {
+        return (etag.getValue() + "\n").getBytes(UTF_8);
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.transformations;
+
+import static com.google.common.base.Throwables.propagate;
+import static java.lang.System.nanoTime;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.marmotta.ldpath.api.backend.RDFBackend;
+import org.apache.marmotta.ldpath.model.fields.FieldMapping;
+import org.apache.marmotta.ldpath.model.programs.Program;
+
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.shared.Lock;
+
+/**
+ * An LDPath program bound to the triples of one resource. Fields are evaluated
+ * one at a time, on demand, so a caller can hand each field's values on
+ * (e.g. to an output stream) without collecting the whole result first.
+ * An evaluation is meant to be consumed once, by one thread.
+ *
+ * Given a pool, the fields are instead evaluated concurrently, each holding a
+ * read lock on the model, and handed on in the program's order as they
+ * become available.
+ *
+ * @author agent
+ */
+public class LDPathEvaluation {
+
+    private final Program<RDFNode> program;
+
+    private final RDFBackend<RDFNode> backend;
+
+    private final RDFNode context;
+
+    private final Lock lock;
+
+    private final ExecutorService fields;
+
+    private long evaluationNanos;
+
+    /**
+     * Receives the values of each field as it is evaluated
+     */
+    @FunctionalInterface
+    public interface FieldConsumer {
+
+        /**
+         * Accept the values of one field
+         * @param fieldName the field name
+         * @param values the values selected for the field
+         * @throws IOException if the values couldn't be written
+         */
+        void accept(String fieldName, Collection<?> values) throws IOException;
+    }
+
+    /**
+     * Bind a program to a resource
+     * @param program the compiled program
+     * @param backend the backend over the resource's triples
+     * @param context the resource
+     */
+    LDPathEvaluation(final Program<RDFNode> program, final RDFBackend<RDFNode> backend, final RDFNode context) {
+        this(program, backend, context, null, null);
+    }
+
+    /**
+     * Bind a program to a resource, evaluating its fields concurrently
+     * @param program the compiled program
+     * @param backend the backend over the resource's triples, which must be safe for concurrent reads
+     * @param context the resource
+     * @param lock the lock of the model the backend reads, or null if there is none
+     * @param fields the pool to evaluate the fields on, or null to evaluate them one at a time
+     */
+    LDPathEvaluation(final Program<RDFNode> program, final RDFBackend<RDFNode> backend, final RDFNode context,
+            final Lock lock, final ExecutorService fields) {
+        this.program = program;
+        this.backend = backend;
+        this.context = context;
+        this.lock = lock;
+        this.fields = fields;
+    }
+
+    /**
+     * Evaluate each field of the program in turn
+     * @param consumer receives the values of each field
+     * @throws IOException if the consumer couldn't write a field
+     */
+    public void forEachField(final FieldConsumer consumer) throws IOException {
+        if (fields == null) {
+            for (final FieldMapping<?, RDFNode> field : program.getFields()) {
+                final long start = nanoTime();
+                final Collection<?> values = evaluate(field);
+                evaluationNanos += nanoTime() - start;
+                consumer.accept(field.getFieldName(), values);
+            }
+            return;
+        }
+
+        // the fields are evaluated side by side, so time them from the first submitted to the last finished
+        final long start = nanoTime();
+        final AtomicLong finished = new AtomicLong(start);
+        final List<Future<Collection<?>>> pending = program.getFields().stream()
+                .map(field -> fields.submit(() -> {
+                    try {
+                        return evaluate(field);
+                    } finally {
+                        finished.accumulateAndGet(nanoTime(), Math::max);
+                    }
+                })).collect(toList());
+        try {
+            final Iterator<Future<Collection<?>>> values = pending.iterator();
+            for (final FieldMapping<?, RDFNode> field : program.getFields()) {
+                consumer.accept(field.getFieldName(), await(values.next()));
+            }
+        } finally {
+            pending.forEach(value -> value.cancel(true));
+            evaluationNanos += finished.get() - start;
+        }
+    }
+
+    /**
+     * Evaluate every field of the program
+     * @return the values of each field, by field name, in the program's order
+     */
+    public Map<String, Collection<?>> asMap() {
+        final Map<String, Collection<?>> result = new LinkedHashMap<>();
+        try {
+            forEachField(result::put);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return result;
+    }
+
+    /**
+     * @return the time spent evaluating fields so far, in nanoseconds; for fields evaluated concurrently, the
+     *         elapsed time from their submission until the last of them finished
+     */
+    public long evaluationNanos() {
+        return evaluationNanos;
+    }
+
+    private Collection<?> evaluate(final FieldMapping<?, RDFNode> field) {
+        if (lock != null) {
+            lock.enterCriticalSection(Lock.READ);
+        }
+        try {
+            return field.getValues(backend, context);
+        } finally {
+            if (lock != null) {
+                lock.leaveCriticalSection();
+            }
+        }
+    }
+
+    private static Collection<?> await(final Future<Collection<?>> value) throws InterruptedIOException {
+        try {
+            return value.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (final ExecutionException e) {
+            throw propagate(e.getCause());
+        }
+    }
+}
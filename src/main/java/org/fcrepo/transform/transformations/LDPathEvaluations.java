@@ -0,0 +1,52 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.transformations;
+
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Several LDPath programs bound to the same triples of one resource, keyed by
+ * program, in the order they were asked for.
+ *
+ * @author agent
+ */
+public class LDPathEvaluations {
+
+    private final Map<String, LDPathEvaluation> evaluations;
+
+    /**
+     * @param evaluations the bound programs, by program key
+     */
+    public LDPathEvaluations(final Map<String, LDPathEvaluation> evaluations) {
+        this.evaluations = ImmutableMap.copyOf(evaluations);
+    }
+
+    /**
+     * @return the bound programs, by program key
+     */
+    public Map<String, LDPathEvaluation> evaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return the time spent evaluating fields so far, in nanoseconds, over all the programs
+     */
+    public long evaluationNanos() {
+        return evaluations.values().stream().mapToLong(LDPathEvaluation::evaluationNanos).sum();
+    }
+}
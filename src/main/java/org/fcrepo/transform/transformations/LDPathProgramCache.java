@@ -0,0 +1,131 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.transformations;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * A bounded, least-recently-used cache of compiled LDPath programs. Entries are
+ * keyed by the repository path of the program node together with its version,
+ * so an updated program is simply a new key; stale entries age out, or are
+ * dropped when a newer version is swapped in.
+ *
+ * @author agent
+ */
+public class LDPathProgramCache {
+
+    private final Cache<String, LDPathTransform> programs;
+
+    /**
+     * Create a new cache holding at most the given number of programs
+     * @param maximumSize the maximum number of compiled programs to retain
+     */
+    public LDPathProgramCache(final long maximumSize) {
+        this.programs = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+    }
+
+    /**
+     * Build the cache key for a program
+     * @param programPath the repository path of the program node
+     * @param version the version of the program
+     * @return the cache key
+     */
+    public static String programKey(final String programPath, final String version) {
+        return programPath + "@" + version;
+    }
+
+    /**
+     * Get the compiled program for a key, compiling it with the loader on a miss
+     * @param key the program node path and version
+     * @param loader reads and compiles the program
+     * @return the compiled program
+     */
+    public LDPathTransform get(final String key, final Callable<LDPathTransform> loader) {
+        try {
+            return programs.get(key, loader);
+        } catch (final ExecutionException e) {
+            throw new RepositoryRuntimeException(e.getCause());
+        } catch (final UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Swap in a newly compiled version of a program, dropping any other version
+     * @param programPath the repository path of the program node
+     * @param version the version of the program
+     * @param program the compiled program
+     */
+    public void replace(final String programPath, final String version, final LDPathTransform program) {
+        final String key = programKey(programPath, version);
+        programs.put(key, program);
+        programs.asMap().keySet().removeIf(other -> other.startsWith(programPath + "@") && !other.equals(key));
+    }
+
+    /**
+     * Drop every version of a program
+     * @param programPath the repository path of the program node
+     */
+    public void invalidate(final String programPath) {
+        programs.asMap().keySet().removeIf(key -> key.startsWith(programPath + "@"));
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public long hitCount() {
+        return programs.stats().hitCount();
+    }
+
+    /**
+     * @return the number of lookups that required the program to be compiled
+     */
+    public long missCount() {
+        return programs.stats().missCount();
+    }
+
+    /**
+     * @return the number of compiled programs currently held
+     */
+    public long size() {
+        return programs.size();
+    }
+
+    /**
+     * Publish the hit, miss and size counters of this cache as gauges
+     * @param registry the metric registry
+     * @param prefix the metric name prefix
+     */
+    public void registerMetrics(final MetricRegistry registry, final String prefix) {
+        registry.register(name(prefix, "hits"), (Gauge<Long>) this::hitCount);
+        registry.register(name(prefix, "misses"), (Gauge<Long>) this::missCount);
+        registry.register(name(prefix, "size"), (Gauge<Long>) this::size);
+    }
+}
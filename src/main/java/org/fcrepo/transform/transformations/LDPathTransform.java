@@ -16,43 +16,66 @@
 package org.fcrepo.transform.transformations;
 
 import com.google.common.collect.ImmutableList;
+import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.RDFNode;
 import com.hp.hpl.jena.rdf.model.Resource;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.marmotta.ldpath.LDPath;
 import org.apache.marmotta.ldpath.backend.jena.GenericJenaBackend;
 import org.apache.marmotta.ldpath.exception.LDPathParseException;
+import org.apache.marmotta.ldpath.model.programs.Program;
 
 import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
 import org.fcrepo.kernel.api.utils.iterators.RdfStream;
 import org.fcrepo.transform.Transformation;
+import org.fcrepo.transform.TripleRequirements;
 
 import org.slf4j.Logger;
 
+import javax.jcr.Binary;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.nodetype.NodeType;
 import javax.ws.rs.WebApplicationException;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
+import static com.codahale.metrics.MetricRegistry.name;
 import static com.google.common.collect.ImmutableList.builder;
 import static com.google.common.collect.ImmutableSortedSet.orderedBy;
+import static com.google.common.hash.Hashing.sha256;
+import static com.hp.hpl.jena.rdf.model.ModelFactory.createDefaultModel;
 import static com.hp.hpl.jena.rdf.model.ResourceFactory.createResource;
+import static java.lang.Boolean.getBoolean;
+import static java.lang.Integer.getInteger;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
 import static org.apache.http.HttpStatus.SC_BAD_REQUEST;
+import static org.fcrepo.metrics.RegistryService.getInstance;
+import static org.fcrepo.transform.transformations.LDPathProgramCache.programKey;
+import static org.fcrepo.transform.transformations.ProgramLocationCache.locationKey;
 import static org.modeshape.jcr.api.JcrConstants.JCR_CONTENT;
 import static org.modeshape.jcr.api.JcrConstants.JCR_DATA;
+import static org.modeshape.jcr.api.JcrConstants.JCR_LAST_MODIFIED;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
- * Utilities for working with LDPath
+ * Utilities for working with LDPath. An instance holds a compiled program and
+ * is immutable, so one instance can be applied to any number of resources,
+ * from any number of threads.
  *
  * @author cbeer
  */
@@ -65,16 +88,113 @@ public class LDPathTransform implements Transformation<List<Map<String, Collecti
 
     // TODO: this mime type was made up
     public static final String APPLICATION_RDF_LDPATH = "application/rdf+ldpath";
-    private final InputStream query;
+
+    /**
+     * System property setting how many parsed programs are kept in memory
+     */
+    public static final String PROGRAM_CACHE_SIZE = "fcrepo.transform.ldpath.cache.size";
+
+    private static final int DEFAULT_PROGRAM_CACHE_SIZE = 256;
+
+    /**
+     * System property turning on the remembering of steps through the model within each evaluation
+     */
+    public static final String MEMOIZE = "fcrepo.transform.ldpath.memoize";
+
+    private static final boolean MEMOIZE_PATHS = getBoolean(MEMOIZE);
+
+    /**
+     * System property setting how many fields of one evaluation may be evaluated at once; by default, one
+     */
+    public static final String FIELD_PARALLELISM = "fcrepo.transform.ldpath.fields.parallelism";
+
+    private static final int FIELD_POOL_PARALLELISM = getInteger(FIELD_PARALLELISM, 1);
+
+    private static final ExecutorService FIELD_POOL =
+            FIELD_POOL_PARALLELISM > 1 ? new ForkJoinPool(FIELD_POOL_PARALLELISM) : null;
+
+    private static final LDPathProgramCache PROGRAM_CACHE =
+            new LDPathProgramCache(getInteger(PROGRAM_CACHE_SIZE, DEFAULT_PROGRAM_CACHE_SIZE));
+
+    private static final ProgramLocationCache PROGRAM_LOCATIONS = new ProgramLocationCache();
+
+    static {
+        PROGRAM_CACHE.registerMetrics(getInstance().getMetrics(), name(LDPathTransform.class, "programCache"));
+    }
+
+    private final String programText;
+
+    private final Program<RDFNode> program;
+
+    private final String version;
+
+    private final Date lastModified;
+
+    private final TripleRequirements requirements;
 
     private static final Logger LOGGER = getLogger(LDPathTransform.class);
 
     /**
-     * Construct a new Transform from the InputStream
+     * Construct a new Transform by compiling the program in the InputStream
      * @param query the query
      */
     public LDPathTransform(final InputStream query) {
-        this.query = query;
+        this(query, null);
+    }
+
+    /**
+     * Construct a new Transform by compiling a stored program
+     * @param query the query
+     * @param lastModified when the program was last modified, or null if unknown
+     */
+    public LDPathTransform(final InputStream query, final Date lastModified) {
+        this.lastModified = lastModified == null ? null : new Date(lastModified.getTime());
+        try {
+            this.programText = IOUtils.toString(query, UTF_8);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        this.version = sha256().hashString(programText, UTF_8).toString();
+        final GenericJenaBackend backend = new GenericJenaBackend(createDefaultModel());
+        try {
+            this.program = new LDPath<>(backend).parseProgram(new StringReader(programText));
+        } catch (final LDPathParseException e) {
+            throw new RepositoryRuntimeException(e);
+        }
+        this.requirements = TripleRequirements.forLdpath(program, backend);
+    }
+
+    @Override
+    public TripleRequirements requirements() {
+        return requirements;
+    }
+
+    /**
+     * @return the hex-encoded SHA-256 hash of the program text
+     */
+    public String version() {
+        return version;
+    }
+
+    /**
+     * @return when the program was last modified, or null if unknown
+     */
+    public Date lastModified() {
+        return lastModified == null ? null : new Date(lastModified.getTime());
+    }
+
+    /**
+     * @return the cache of parsed programs stored in the repository
+     */
+    public static LDPathProgramCache programCache() {
+        return PROGRAM_CACHE;
+    }
+
+    /**
+     * @return the cache of resolved program locations
+     */
+    public static ProgramLocationCache programLocations() {
+        return PROGRAM_LOCATIONS;
     }
 
     /**
@@ -92,9 +212,39 @@ public class LDPathTransform implements Transformation<List<Map<String, Collecti
         LOGGER.debug("Found program node: {}", programNode.getPath());
 
         final NodeType primaryNodeType = node.getPrimaryNodeType();
+        final Set<NodeType> mixinTypes = orderedBy(BY_NAME).add(node.getMixinNodeTypes()).build();
+
+        final String locationKey = locationKey(key, primaryNodeType.getName(),
+                mixinTypes.stream().map(NodeType::getName).collect(toList()));
+        final long generation = PROGRAM_LOCATIONS.generation();
+        Optional<String> programType = PROGRAM_LOCATIONS.get(locationKey);
+
+        if (programType == null) {
+            programType = findProgramType(programNode, primaryNodeType, mixinTypes);
+            PROGRAM_LOCATIONS.put(locationKey, programType, generation);
+        }
+
+        if (programType.isPresent()) {
+            return getStoredTransform(programNode.getNode(programType.get()));
+        }
+
+        throw new WebApplicationException(new Exception(
+                "Couldn't find transformation for " + node.getPath()
+                        + " and transformation key " + key), SC_BAD_REQUEST);
+    }
+
+    /**
+     * Find the most specific node type that has a program in a program folder
+     * @param programNode the program folder
+     * @param primaryNodeType the primary type of the node being transformed
+     * @param mixinTypes the mixin types of the node being transformed
+     * @return the name of the node type whose program applies, if any
+     * @throws RepositoryException if repository exception occurred
+     */
+    private static Optional<String> findProgramType(final Node programNode, final NodeType primaryNodeType,
+            final Set<NodeType> mixinTypes) throws RepositoryException {
 
         final Set<NodeType> supertypes = orderedBy(BY_NAME).add(primaryNodeType.getSupertypes()).build();
-        final Set<NodeType> mixinTypes = orderedBy(BY_NAME).add(node.getMixinNodeTypes()).build();
 
         // start with mixins, primary type, and supertypes of primary type
         final ImmutableList.Builder<NodeType> nodeTypesB = builder();
@@ -109,31 +259,129 @@ public class LDPathTransform implements Transformation<List<Map<String, Collecti
         LOGGER.debug("Discovered node types: {}", nodeTypes);
         for (final NodeType nodeType : nodeTypes) {
             if (programNode.hasNode(nodeType.toString())) {
-                return new LDPathTransform(programNode.getNode(nodeType.toString())
-                                               .getNode(JCR_CONTENT)
-                                               .getProperty(JCR_DATA)
-                                               .getBinary().getStream());
+                return Optional.of(nodeType.toString());
             }
         }
+        return Optional.empty();
+    }
 
-        throw new WebApplicationException(new Exception(
-                "Couldn't find transformation for " + node.getPath()
-                        + " and transformation key " + key), SC_BAD_REQUEST);
+    /**
+     * Get the transform for a stored program, reusing a previously parsed copy
+     * of the same program version when one is cached
+     * @param programNode the nt:file node holding the program
+     * @return the transform
+     * @throws RepositoryException if repository exception occurred
+     */
+    private static LDPathTransform getStoredTransform(final Node programNode) throws RepositoryException {
+        final Node content = programNode.getNode(JCR_CONTENT);
+        final String version = getProgramVersion(content);
+
+        if (version == null) {
+            return compile(content);
+        }
+
+        return PROGRAM_CACHE.get(programKey(programNode.getPath(), version), () -> compile(content));
+    }
+
+    /**
+     * Compile the current version of a stored program ahead of its next use,
+     * swapping it into the program cache in place of any other version
+     * @param programNode the nt:file node holding the program
+     * @throws RepositoryException if repository exception occurred
+     */
+    public static void reloadStoredTransform(final Node programNode) throws RepositoryException {
+        final Node content = programNode.getNode(JCR_CONTENT);
+        final String version = getProgramVersion(content);
+
+        if (version == null) {
+            PROGRAM_CACHE.invalidate(programNode.getPath());
+        } else {
+            PROGRAM_CACHE.replace(programNode.getPath(), version, compile(content));
+        }
+    }
+
+    private static LDPathTransform compile(final Node content) throws RepositoryException {
+        final Date lastModified = content.hasProperty(JCR_LAST_MODIFIED)
+                ? content.getProperty(JCR_LAST_MODIFIED).getDate().getTime() : null;
+        return new LDPathTransform(content.getProperty(JCR_DATA).getBinary().getStream(), lastModified);
+    }
+
+    /**
+     * Identify the version of a stored program: the content hash of its binary
+     * if the repository offers one, otherwise its last-modified date.
+     * @param content the jcr:content node of the program
+     * @return the version, or null if the program can't be versioned
+     * @throws RepositoryException if repository exception occurred
+     */
+    private static String getProgramVersion(final Node content) throws RepositoryException {
+        final Binary binary = content.getProperty(JCR_DATA).getBinary();
+        if (binary instanceof org.modeshape.jcr.api.Binary) {
+            return ((org.modeshape.jcr.api.Binary) binary).getHexHash();
+        }
+        if (content.hasProperty(JCR_LAST_MODIFIED)) {
+            return content.getProperty(JCR_LAST_MODIFIED).getString();
+        }
+        return null;
     }
 
     @Override
     public List<Map<String, Collection<Object>>> apply(final RdfStream stream) {
-        final LDPath<RDFNode> ldpathForResource =
-            getLdpathResource(stream);
+        return ImmutableList.of(unsafeCast(bind(stream).asMap()));
+    }
 
-        final Resource context = createResource(stream.topic().getURI());
+    /**
+     * Bind this program to a resource's triples, for field-by-field evaluation
+     * @param stream the resource's triples
+     * @return the bound program
+     */
+    public LDPathEvaluation bind(final RdfStream stream) {
+        return bind(stream.asModel(), stream.topic());
+    }
 
-        try {
-            return ImmutableList.of(unsafeCast(
-                ldpathForResource.programQuery(context, new InputStreamReader(query))));
-        } catch (final LDPathParseException e) {
-            throw new RepositoryRuntimeException(e);
+    /**
+     * Bind this program to an already materialized model of a resource's triples
+     * @param model the resource's triples
+     * @param topic the resource
+     * @return the bound program
+     */
+    public LDPathEvaluation bind(final Model model, final com.hp.hpl.jena.graph.Node topic) {
+        return bind(model, topic, MEMOIZE_PATHS);
+    }
+
+    /**
+     * Bind this program to an already materialized model of a resource's
+     * triples, choosing whether the steps taken through the model are
+     * remembered for the rest of the evaluation, which pays off when many
+     * fields share a path prefix
+     * @param model the resource's triples
+     * @param topic the resource
+     * @param memoize whether to remember the steps taken
+     * @return the bound program
+     */
+    public LDPathEvaluation bind(final Model model, final com.hp.hpl.jena.graph.Node topic, final boolean memoize) {
+        return bind(model, topic, memoize, FIELD_POOL);
+    }
+
+    /**
+     * Bind this program to an already materialized model of a resource's
+     * triples, evaluating its fields concurrently on the given pool. The model
+     * must not be changed while the evaluation is consumed.
+     * @param model the resource's triples
+     * @param topic the resource
+     * @param memoize whether to remember the steps taken
+     * @param fields the pool to evaluate the fields on, or null to evaluate them one at a time
+     * @return the bound program
+     */
+    public LDPathEvaluation bind(final Model model, final com.hp.hpl.jena.graph.Node topic, final boolean memoize,
+            final ExecutorService fields) {
+        final GenericJenaBackend backend = memoize ? new MemoizingJenaBackend(model) : new GenericJenaBackend(model);
+
+        final Resource context = createResource(topic.getURI());
+
+        if (fields == null || program.getFields().size() < 2) {
+            return new LDPathEvaluation(program, backend, context);
         }
+        return new LDPathEvaluation(program, backend, context, model.getLock(), fields);
     }
 
     @SuppressWarnings("unchecked")
@@ -143,22 +391,11 @@ public class LDPathTransform implements Transformation<List<Map<String, Collecti
 
     @Override
     public boolean equals(final Object other) {
-        return other instanceof LDPathTransform && ((LDPathTransform) other).query.equals(query);
+        return other instanceof LDPathTransform && ((LDPathTransform) other).programText.equals(programText);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(query);
-    }
-
-    /**
-     * Get the LDPath resource for an object
-     * @param rdfStream
-     * @return the LDPath resource for the given object
-     */
-    private static LDPath<RDFNode> getLdpathResource(final RdfStream rdfStream) {
-
-        return new LDPath<>(new GenericJenaBackend(rdfStream.asModel()));
-
+        return Objects.hashCode(programText);
     }
 }
@@ -0,0 +1,83 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.transformations;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.apache.marmotta.ldpath.backend.jena.GenericJenaBackend;
+
+import com.google.common.collect.ImmutableList;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+
+/**
+ * A backend that remembers each step it has taken through the model, so that
+ * the fields of a program that share a path prefix, e.g. several fields
+ * starting {@code fedora:hasParent / ...}, walk that prefix through the model
+ * only once. It is meant to live for a single evaluation, over a model that
+ * doesn't change meanwhile.
+ *
+ * @author agent
+ */
+public class MemoizingJenaBackend extends GenericJenaBackend {
+
+    private final ConcurrentMap<List<RDFNode>, Collection<RDFNode>> objects = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<List<RDFNode>, Collection<RDFNode>> subjects = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * @param model the triples of the resource being evaluated
+     */
+    public MemoizingJenaBackend(final Model model) {
+        super(model);
+    }
+
+    @Override
+    public Collection<RDFNode> listObjects(final RDFNode subject, final RDFNode property) {
+        return remembered(objects, ImmutableList.of(subject, property), () -> super.listObjects(subject, property));
+    }
+
+    @Override
+    public Collection<RDFNode> listSubjects(final RDFNode property, final RDFNode object) {
+        return remembered(subjects, ImmutableList.of(property, object), () -> super.listSubjects(property, object));
+    }
+
+    /**
+     * @return the number of steps answered from memory
+     */
+    public long hitCount() {
+        return hits.get();
+    }
+
+    private Collection<RDFNode> remembered(final ConcurrentMap<List<RDFNode>, Collection<RDFNode>> steps,
+            final List<RDFNode> step, final Supplier<Collection<RDFNode>> walk) {
+        final Collection<RDFNode> known = steps.get(step);
+        if (known != null) {
+            hits.incrementAndGet();
+            return known;
+        }
+        final Collection<RDFNode> found = ImmutableList.copyOf(walk.get());
+        final Collection<RDFNode> raced = steps.putIfAbsent(step, found);
+        return raced == null ? found : raced;
+    }
+}
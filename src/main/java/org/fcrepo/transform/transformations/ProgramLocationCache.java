@@ -0,0 +1,104 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.transformations;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers which node type's program answers a program key for a given
+ * combination of primary type and mixins, including the combinations for
+ * which no program exists. The locations of a program key are dropped
+ * whenever the programs stored under it change.
+ *
+ * @author agent
+ */
+public class ProgramLocationCache {
+
+    private final ConcurrentMap<String, Optional<String>> locations = new ConcurrentHashMap<>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Build the cache key for a lookup
+     * @param programKey the program key
+     * @param primaryType the name of the node's primary type
+     * @param mixins the names of the node's mixin types, in a stable order
+     * @return the cache key
+     */
+    public static String locationKey(final String programKey, final String primaryType,
+            final Collection<String> mixins) {
+        return programKey + "\n" + primaryType + "\n" + String.join(",", mixins);
+    }
+
+    /**
+     * @return the current generation, to be passed back to {@link #put}
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Get a resolved program location
+     * @param locationKey the cache key
+     * @return the name of the node type whose program applies, empty if no program
+     *         applies, or null if the lookup hasn't been resolved yet
+     */
+    public Optional<String> get(final String locationKey) {
+        return locations.get(locationKey);
+    }
+
+    /**
+     * Record a resolved program location, unless the cache was invalidated since
+     * the resolution started
+     * @param locationKey the cache key
+     * @param location the name of the node type whose program applies, or empty
+     * @param startGeneration the generation observed before resolving the location
+     */
+    public void put(final String locationKey, final Optional<String> location, final long startGeneration) {
+        locations.put(locationKey, location);
+        if (generation.get() != startGeneration) {
+            locations.remove(locationKey, location);
+        }
+    }
+
+    /**
+     * Drop the resolved locations of one program key
+     * @param programKey the program key
+     */
+    public void invalidate(final String programKey) {
+        generation.incrementAndGet();
+        locations.keySet().removeIf(key -> key.startsWith(programKey + "\n"));
+    }
+
+    /**
+     * Drop every resolved location
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        locations.clear();
+    }
+
+    /**
+     * @return the number of resolved locations held
+     */
+    public long size() {
+        return locations.size();
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.transformations;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.hash.Hashing.sha256;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.concurrent.ExecutionException;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryFactory;
+
+/**
+ * A concurrent cache of parsed SPARQL queries, keyed by a hash of the
+ * normalized query text and bounded by the total size of the cached texts.
+ * Cached queries are shared between requests and must be treated as read-only.
+ *
+ * @author agent
+ */
+public class SparqlQueryCache {
+
+    private final Cache<String, Query> queries;
+
+    /**
+     * Create a new cache holding queries up to the given total size
+     * @param maximumBytes the maximum combined size of the cached query texts
+     */
+    public SparqlQueryCache(final long maximumBytes) {
+        this.queries = CacheBuilder.newBuilder().maximumWeight(maximumBytes)
+                .weigher((final String key, final Query query) -> weigh(query)).recordStats().build();
+    }
+
+    /**
+     * Get the parsed form of a query, parsing it on a miss
+     * @param queryText the query text
+     * @return the parsed query
+     */
+    public Query get(final String queryText) {
+        final String normalized = normalize(queryText);
+        try {
+            return queries.get(hash(normalized), () -> QueryFactory.create(normalized));
+        } catch (final ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Normalize a query's text, so trivially different copies of the same
+     * query share an entry. Only line endings and the surrounding whitespace
+     * are touched, since whitespace inside the query may be significant.
+     * @param queryText the query text
+     * @return the normalized text
+     */
+    public static String normalize(final String queryText) {
+        return queryText.replace("\r\n", "\n").trim();
+    }
+
+    /**
+     * Hash a query's text
+     * @param queryText the query text
+     * @return the hex-encoded SHA-256 hash of the normalized text
+     */
+    public static String hash(final String queryText) {
+        return sha256().hashString(normalize(queryText), UTF_8).toString();
+    }
+
+    private static int weigh(final Query query) {
+        return 2 * query.toString().length();
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public long hitCount() {
+        return queries.stats().hitCount();
+    }
+
+    /**
+     * @return the number of lookups that required the query to be parsed
+     */
+    public long missCount() {
+        return queries.stats().missCount();
+    }
+
+    /**
+     * @return the number of queries evicted to stay within the size bound
+     */
+    public long evictionCount() {
+        return queries.stats().evictionCount();
+    }
+
+    /**
+     * @return the number of parsed queries currently held
+     */
+    public long size() {
+        return queries.size();
+    }
+
+    /**
+     * Publish the counters of this cache as gauges
+     * @param registry the metric registry
+     * @param prefix the metric name prefix
+     */
+    public void registerMetrics(final MetricRegistry registry, final String prefix) {
+        registry.register(name(prefix, "hits"), (Gauge<Long>) this::hitCount);
+        registry.register(name(prefix, "misses"), (Gauge<Long>) this::missCount);
+        registry.register(name(prefix, "evictions"), (Gauge<Long>) this::evictionCount);
+        registry.register(name(prefix, "size"), (Gauge<Long>) this::size);
+    }
+}
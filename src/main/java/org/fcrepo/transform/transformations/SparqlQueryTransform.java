@@ -18,56 +18,153 @@ package org.fcrepo.transform.transformations;
 import com.hp.hpl.jena.query.Query;
 import com.hp.hpl.jena.query.QueryExecution;
 import com.hp.hpl.jena.query.QueryExecutionFactory;
-import com.hp.hpl.jena.query.QueryFactory;
 import com.hp.hpl.jena.rdf.model.Model;
 
 import org.apache.commons.io.IOUtils;
 import org.fcrepo.kernel.api.utils.iterators.RdfStream;
 import org.fcrepo.transform.Transformation;
+import org.fcrepo.transform.TripleRequirements;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Objects;
 
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.lang.Long.getLong;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.fcrepo.metrics.RegistryService.getInstance;
+
 /**
- * SPARQL Query-based transforms
+ * SPARQL Query-based transforms. An instance holds a parsed query and may be
+ * applied to any number of resources.
  *
  * @author cbeer
  */
 public class SparqlQueryTransform implements Transformation<QueryExecution> {
 
-    private final InputStream query;
+    /**
+     * System property setting the combined size, in bytes, of the parsed queries kept in memory
+     */
+    public static final String QUERY_CACHE_BYTES = "fcrepo.transform.sparql.cache.bytes";
+
+    private static final long DEFAULT_QUERY_CACHE_BYTES = 4L * 1024 * 1024;
+
+    /**
+     * System property setting the longest, in milliseconds, any query may run;
+     * zero or less for no limit
+     */
+    public static final String QUERY_TIMEOUT = "fcrepo.transform.sparql.timeout";
+
+    private static final long DEFAULT_QUERY_TIMEOUT = 60000;
+
+    private static final SparqlQueryCache QUERY_CACHE =
+            new SparqlQueryCache(getLong(QUERY_CACHE_BYTES, DEFAULT_QUERY_CACHE_BYTES));
+
+    static {
+        QUERY_CACHE.registerMetrics(getInstance().getMetrics(), name(SparqlQueryTransform.class, "queryCache"));
+    }
+
+    private final String queryHash;
+
+    private final Query query;
+
+    private final TripleRequirements requirements;
 
     /**
-     * Construct a new SparqlQueryTransform from the data from
+     * Construct a new SparqlQueryTransform by compiling the query in
      * the InputStream
      * @param query the query
      */
     public SparqlQueryTransform(final InputStream query) {
-        this.query = query;
+        try {
+            final String queryText = IOUtils.toString(query, UTF_8);
+            this.queryHash = SparqlQueryCache.hash(queryText);
+            this.query = QUERY_CACHE.get(queryText);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        this.requirements = TripleRequirements.forQuery(query);
+    }
+
+    @Override
+    public TripleRequirements requirements() {
+        return requirements;
     }
 
     @Override
     public QueryExecution apply(final RdfStream rdfStream) {
+        return bind(rdfStream.asModel());
+    }
 
-        try {
-            final Model model = rdfStream.asModel();
-            final Query sparqlQuery =
-                QueryFactory.create(IOUtils.toString(query));
+    /**
+     * Prepare this query for execution against an already materialized model
+     * @param model the resource's triples
+     * @return the query execution
+     */
+    public QueryExecution bind(final Model model) {
+        return bind(model, null);
+    }
 
-            return QueryExecutionFactory.create(sparqlQuery, model);
-        } catch (final IOException e) {
-            throw new IllegalStateException(e);
+    /**
+     * Prepare this query for execution against an already materialized model,
+     * with a deadline no later than the configured one
+     * @param model the resource's triples
+     * @param requestedTimeout the longest, in milliseconds, the query may run, or null for the configured limit
+     * @return the query execution
+     */
+    public QueryExecution bind(final Model model, final Long requestedTimeout) {
+        final QueryExecution execution = QueryExecutionFactory.create(query, model);
+        final long timeout = timeout(requestedTimeout);
+        if (timeout > 0) {
+            execution.setTimeout(timeout, MILLISECONDS);
         }
+        return execution;
+    }
+
+    /**
+     * Find how long a query may run
+     * @param requestedTimeout the longest, in milliseconds, the query was asked to run, or null
+     * @return the limit in milliseconds, zero or less for none
+     */
+    public static long timeout(final Long requestedTimeout) {
+        return effectiveTimeout(getLong(QUERY_TIMEOUT, DEFAULT_QUERY_TIMEOUT), requestedTimeout);
+    }
+
+    /**
+     * Combine the configured and requested deadlines: a request may only lower the limit
+     * @param configuredTimeout the configured limit in milliseconds, zero or less for none
+     * @param requestedTimeout the requested limit in milliseconds, or null
+     * @return the limit in milliseconds, zero or less for none
+     */
+    static long effectiveTimeout(final long configuredTimeout, final Long requestedTimeout) {
+        if (requestedTimeout == null || requestedTimeout <= 0) {
+            return configuredTimeout;
+        }
+        return configuredTimeout > 0 ? Math.min(configuredTimeout, requestedTimeout) : requestedTimeout;
+    }
+
+    /**
+     * @return the hex-encoded SHA-256 hash of the normalized query text
+     */
+    public String version() {
+        return queryHash;
+    }
+
+    /**
+     * @return the cache of parsed queries
+     */
+    public static SparqlQueryCache queryCache() {
+        return QUERY_CACHE;
     }
 
     @Override
     public boolean equals(final Object other) {
-        return other instanceof SparqlQueryTransform && query.equals(((SparqlQueryTransform)other).query);
+        return other instanceof SparqlQueryTransform && queryHash.equals(((SparqlQueryTransform)other).queryHash);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(query);
+        return Objects.hashCode(queryHash);
     }
 }
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform;
+
+import static javax.jcr.nodetype.NodeType.NT_BASE;
+import static javax.jcr.nodetype.NodeType.NT_FILE;
+import static javax.jcr.nodetype.NodeType.NT_FOLDER;
+import static org.fcrepo.transform.TransformConfigurationInitializer.CONFIGURATION_VERSION;
+import static org.fcrepo.transform.TransformConfigurationInitializer.TRANSFORM_CONFIGURATION;
+import static org.fcrepo.transform.TransformConfigurationInitializer.VERSION_MIXIN;
+import static org.fcrepo.transform.TransformConfigurationInitializer.VERSION_PROPERTY;
+import static org.fcrepo.transform.transformations.LDPathTransform.CONFIGURATION_FOLDER;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.modeshape.jcr.api.JcrTools;
+
+/**
+ * <p>TransformConfigurationInitializerTest class.</p>
+ *
+ * @author agent
+ */
+public class TransformConfigurationInitializerTest {
+
+    @Mock
+    private Repository mockRepository;
+
+    @Mock
+    private Session mockSession;
+
+    @Mock
+    private JcrTools mockJcrTools;
+
+    @Mock
+    private Node mockRoot;
+
+    @Mock
+    private Node mockFolder;
+
+    @Mock
+    private Node mockProgram;
+
+    private TransformConfigurationInitializer testObj;
+
+    @Before
+    public void setUp() throws RepositoryException {
+        initMocks(this);
+        testObj = new TransformConfigurationInitializer();
+        setField(testObj, "repository", mockRepository);
+        setField(testObj, "jcrTools", mockJcrTools);
+        when(mockRepository.login()).thenReturn(mockSession);
+    }
+
+    @Test
+    public void testSkipsInstalledConfiguration() throws RepositoryException, IOException {
+        final Node mockConfiguration = mock(Node.class, RETURNS_DEEP_STUBS);
+        when(mockSession.nodeExists(TRANSFORM_CONFIGURATION)).thenReturn(true);
+        when(mockSession.getNode(TRANSFORM_CONFIGURATION)).thenReturn(mockConfiguration);
+        when(mockConfiguration.hasProperty(VERSION_PROPERTY)).thenReturn(true);
+        when(mockConfiguration.getProperty(VERSION_PROPERTY).getString()).thenReturn(CONFIGURATION_VERSION);
+
+        testObj.setUpRepositoryConfiguration();
+
+        verify(mockSession, never()).save();
+        verify(mockSession).logout();
+    }
+
+    @Test
+    public void testInstallsConfiguration() throws RepositoryException, IOException {
+        when(mockSession.nodeExists(TRANSFORM_CONFIGURATION)).thenReturn(false);
+        when(mockJcrTools.findOrCreateNode(mockSession, TRANSFORM_CONFIGURATION, "fedora:Configuration",
+                "fedora:NodeTypeConfiguration")).thenReturn(mockRoot);
+        when(mockJcrTools.findOrCreateNode(mockSession, CONFIGURATION_FOLDER + "default", NT_FOLDER, NT_FOLDER))
+                .thenReturn(mockFolder);
+        when(mockFolder.hasNode(NT_BASE)).thenReturn(false);
+        when(mockFolder.addNode(NT_BASE, NT_FILE)).thenReturn(mockProgram);
+        when(mockProgram.getPath()).thenReturn(CONFIGURATION_FOLDER + "default/" + NT_BASE);
+
+        testObj.setUpRepositoryConfiguration();
+
+        verify(mockJcrTools).registerNodeTypes(mockSession, "ldpath.cnd");
+        verify(mockFolder).addNode(NT_BASE, NT_FILE);
+        verify(mockJcrTools).uploadFile(eq(mockSession), eq(CONFIGURATION_FOLDER + "default/" + NT_BASE),
+                any(InputStream.class));
+        verify(mockRoot).addMixin(VERSION_MIXIN);
+        verify(mockRoot).setProperty(VERSION_PROPERTY, CONFIGURATION_VERSION);
+        verify(mockSession).save();
+        verify(mockSession).logout();
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform;
+
+import static java.util.Optional.of;
+import static javax.jcr.observation.Event.PROPERTY_CHANGED;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
+import static org.fcrepo.transform.TransformConfigurationListener.programSegments;
+import static org.fcrepo.transform.http.responses.TransformResultCache.resultKey;
+import static org.fcrepo.transform.transformations.LDPathProgramCache.programKey;
+import static org.fcrepo.transform.transformations.LDPathTransform.CONFIGURATION_FOLDER;
+import static org.fcrepo.transform.transformations.LDPathTransform.programCache;
+import static org.fcrepo.transform.transformations.LDPathTransform.programLocations;
+import static org.fcrepo.transform.transformations.ProgramLocationCache.locationKey;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import java.net.URI;
+
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.ws.rs.core.EntityTag;
+
+import org.fcrepo.transform.http.responses.TransformResultCache;
+import org.fcrepo.transform.transformations.LDPathTransform;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * @author agent
+ */
+public class TransformConfigurationListenerTest {
+
+    private static final String PROGRAM = CONFIGURATION_FOLDER + "default/fedora:Container";
+
+    private static final URI BASE = URI.create("http://localhost/rest");
+
+    private TransformConfigurationListener testObj;
+
+    private Session mockSession;
+
+    @Before
+    public void setUp() throws RepositoryException {
+        final Repository mockRepository = mock(Repository.class);
+        mockSession = mock(Session.class, RETURNS_DEEP_STUBS);
+        when(mockRepository.login()).thenReturn(mockSession);
+        testObj = new TransformConfigurationListener();
+        setField(testObj, "repository", mockRepository);
+        testObj.register();
+        programLocations().invalidateAll();
+        TransformResultCache.shared().invalidateAll();
+    }
+
+    @After
+    public void tearDown() throws RepositoryException {
+        testObj.unregister();
+    }
+
+    @Test
+    public void testProgramSegments() {
+        assertEquals(ImmutableList.of("default", "fedora:Container", "jcr:content", "jcr:data"),
+                programSegments(PROGRAM + "/jcr:content/jcr:data"));
+        assertEquals(ImmutableList.of("default"), programSegments(CONFIGURATION_FOLDER + "default"));
+        assertTrue(programSegments("/fedora:system/fedora:transform").isEmpty());
+    }
+
+    @Test
+    public void testChangedProgramIsEvictedAlone() throws RepositoryException {
+        final String defaultLocation = locationKey("default", "fedora:Container", ImmutableList.of());
+        final String otherLocation = locationKey("other", "fedora:Container", ImmutableList.of());
+        programLocations().put(defaultLocation, of("fedora:Container"), programLocations().generation());
+        programLocations().put(otherLocation, of("fedora:Container"), programLocations().generation());
+        final String defaultResult = resultKey("default", BASE, "/a", new EntityTag("a"), APPLICATION_JSON_TYPE,
+                "user");
+        final String otherResult = resultKey("other", BASE, "/a", new EntityTag("a"), APPLICATION_JSON_TYPE, "user");
+        TransformResultCache.shared().put(defaultResult, new byte[] { 1 });
+        TransformResultCache.shared().put(otherResult, new byte[] { 2 });
+
+        testObj.onEvent(events(PROGRAM + "/jcr:content/jcr:data"));
+
+        assertNull(programLocations().get(defaultLocation));
+        assertNotNull(programLocations().get(otherLocation));
+        assertNull(TransformResultCache.shared().get(defaultResult));
+        assertNotNull(TransformResultCache.shared().get(otherResult));
+    }
+
+    @Test
+    public void testOtherChangesEvictEverything() throws RepositoryException {
+        final String location = locationKey("other", "fedora:Container", ImmutableList.of());
+        programLocations().put(location, of("fedora:Container"), programLocations().generation());
+
+        testObj.onEvent(events("/fedora:system/fedora:transform/jcr:lastModified"));
+
+        assertEquals(0, programLocations().size());
+    }
+
+    @Test
+    public void testRemovedProgramIsDropped() throws RepositoryException {
+        final LDPathTransform program = mock(LDPathTransform.class);
+        programCache().get(programKey(PROGRAM, "1"), () -> program);
+        when(mockSession.nodeExists(PROGRAM)).thenReturn(false);
+
+        testObj.reload(PROGRAM);
+
+        final LDPathTransform recompiled = mock(LDPathTransform.class);
+        assertSame(recompiled, programCache().get(programKey(PROGRAM, "1"), () -> recompiled));
+    }
+
+    private static EventIterator events(final String path) throws RepositoryException {
+        final Event event = mock(Event.class);
+        when(event.getType()).thenReturn(PROPERTY_CHANGED);
+        when(event.getPath()).thenReturn(path);
+        final EventIterator events = mock(EventIterator.class);
+        when(events.hasNext()).thenReturn(true, false);
+        when(events.nextEvent()).thenReturn(event);
+        return events;
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.hp.hpl.jena.graph.NodeFactory.createLiteral;
+import static com.hp.hpl.jena.rdf.model.ResourceFactory.createProperty;
+import static com.hp.hpl.jena.rdf.model.ResourceFactory.createResource;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
+import static org.fcrepo.metrics.RegistryService.getInstance;
+import static org.fcrepo.transform.TransformMetrics.EVALUATION;
+import static org.fcrepo.transform.TransformMetrics.MODEL;
+import static org.fcrepo.transform.TransformMetrics.MODEL_SIZE;
+import static org.fcrepo.transform.TransformMetrics.SERIALIZATION;
+import static org.fcrepo.transform.TransformMetrics.TRIPLES;
+import static org.fcrepo.transform.TransformMetrics.ldpathPrefix;
+import static org.fcrepo.transform.TransformMetrics.materialize;
+import static org.fcrepo.transform.TransformMetrics.postedPrefix;
+import static org.fcrepo.transform.TransformMetrics.recordWrite;
+import static org.fcrepo.transform.TransformMetrics.timer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+
+import org.fcrepo.kernel.api.utils.iterators.RdfStream;
+import org.fcrepo.transform.transformations.LDPathEvaluation;
+import org.fcrepo.transform.transformations.LDPathTransform;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+
+/**
+ * <p>TransformMetricsTest class.</p>
+ *
+ * @author agent
+ */
+public class TransformMetricsTest {
+
+    private final MetricRegistry registry = getInstance().getMetrics();
+
+    @Test
+    public void testMaterialize() {
+        final String prefix = ldpathPrefix("testMaterialize");
+        final Model model = materialize(prefix, stream());
+
+        assertEquals(1, model.size());
+        assertEquals(1, timer(prefix, TRIPLES).getCount());
+        assertEquals(1, timer(prefix, MODEL).getCount());
+        assertEquals(1, registry.histogram(name(prefix, MODEL_SIZE)).getSnapshot().getMax());
+    }
+
+    @Test
+    public void testRecordWrite() throws Exception {
+        final String prefix = ldpathPrefix("testRecordWrite");
+        final RdfStream rdfStream = stream();
+        final LDPathEvaluation evaluation = new LDPathTransform(new ByteArrayInputStream(
+                "title = dc:title :: xsd:string ;".getBytes())).bind(rdfStream);
+        evaluation.asMap();
+
+        recordWrite(prefix, APPLICATION_JSON_TYPE, evaluation, evaluation.evaluationNanos() + 1000);
+
+        assertEquals(1, timer(prefix, EVALUATION).getCount());
+        assertTrue(timer(prefix, EVALUATION).getSnapshot().getMax() > 0);
+        assertEquals(1000, registry.timer(name(prefix, SERIALIZATION, "application-json")).getSnapshot().getMax());
+    }
+
+    @Test
+    public void testRecordWriteNeverNegative() throws Exception {
+        final String prefix = ldpathPrefix("testRecordWriteNeverNegative");
+        final LDPathEvaluation evaluation = new LDPathTransform(new ByteArrayInputStream(
+                "title = dc:title :: xsd:string ;".getBytes())).bind(stream());
+        evaluation.asMap();
+
+        recordWrite(prefix, APPLICATION_JSON_TYPE, evaluation, evaluation.evaluationNanos() - 1000);
+
+        final Timer serialization = registry.timer(name(prefix, SERIALIZATION, "application-json"));
+        assertEquals(1, serialization.getCount());
+        assertEquals(0, serialization.getSnapshot().getMax());
+    }
+
+    @Test
+    public void testPostedPrefix() {
+        assertEquals("org.fcrepo.transform.http.FedoraTransform.posted.sparql", postedPrefix("sparql"));
+        assertEquals("org.fcrepo.transform.http.FedoraTransform.posted.ldpath", postedPrefix("ldpath"));
+    }
+
+    private static RdfStream stream() {
+        final RdfStream rdfStream = new RdfStream();
+        rdfStream.concat(new Triple(createResource("abc").asNode(),
+                createProperty("http://purl.org/dc/elements/1.1/title").asNode(),
+                createLiteral("some-title")));
+        rdfStream.topic(createResource("abc").asNode());
+        return rdfStream;
+    }
+}
@@ -23,6 +23,7 @@ import org.mockito.Mock;
 
 import javax.ws.rs.core.MediaType;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.Collection;
 import java.util.Map;
@@ -39,6 +40,10 @@ import static org.mockito.MockitoAnnotations.initMocks;
  */
 public class TransformationFactoryTest {
 
+    private static final String LDPATH_PROGRAM = "title = dc:title :: xsd:string ;";
+
+    private static final String SPARQL_QUERY = "SELECT ?x WHERE { ?x ?y ?z }";
+
     @Mock
     InputStream mockInputStream;
 
@@ -54,9 +59,9 @@ public class TransformationFactoryTest {
     public void testLDPathCreation() {
 
         final Transformation<Map<String, Collection<Object>>> transform =
-            transformationFactory.getTransform(MediaType.valueOf(APPLICATION_RDF_LDPATH), mockInputStream);
+            transformationFactory.getTransform(MediaType.valueOf(APPLICATION_RDF_LDPATH), stream(LDPATH_PROGRAM));
 
-        assertEquals(new LDPathTransform(mockInputStream), transform);
+        assertEquals(new LDPathTransform(stream(LDPATH_PROGRAM)), transform);
 
     }
 
@@ -64,8 +69,8 @@ public class TransformationFactoryTest {
     public void testSparqlCreation() {
 
         final Transformation<Map<String, Collection<Object>>> transform =
-            transformationFactory.getTransform(MediaType.valueOf(contentTypeSPARQLQuery), mockInputStream);
-        assertEquals(new SparqlQueryTransform(mockInputStream), transform);
+            transformationFactory.getTransform(MediaType.valueOf(contentTypeSPARQLQuery), stream(SPARQL_QUERY));
+        assertEquals(new SparqlQueryTransform(stream(SPARQL_QUERY)), transform);
 
     }
 
@@ -76,4 +81,8 @@ public class TransformationFactoryTest {
         transformationFactory.getTransform(MediaType.valueOf("some/mime-type"), mockInputStream);
 
     }
+
+    private static InputStream stream(final String program) {
+        return new ByteArrayInputStream(program.getBytes());
+    }
 }
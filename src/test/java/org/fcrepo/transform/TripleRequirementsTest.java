@@ -0,0 +1,172 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform;
+
+import static com.hp.hpl.jena.query.QueryFactory.create;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.fcrepo.transform.TripleRequirements.ALL;
+import static org.fcrepo.transform.TripleRequirements.PREFER_CONTAINMENT;
+import static org.fcrepo.transform.TripleRequirements.PREFER_INBOUND_REFERENCES;
+import static org.fcrepo.transform.TripleRequirements.PREFER_SERVER_MANAGED;
+import static org.fcrepo.transform.TripleRequirements.forQuery;
+import static org.fcrepo.transform.TripleRequirements.of;
+import static org.fcrepo.transform.TripleRequirements.union;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+
+import org.fcrepo.transform.transformations.LDPathTransform;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * @author agent
+ */
+public class TripleRequirementsTest {
+
+    private static final String DC = "http://purl.org/dc/elements/1.1/";
+
+    @Test
+    public void testQueryOfDescriptiveProperties() {
+        final TripleRequirements requirements =
+                forQuery(create("SELECT ?title WHERE { ?s <" + DC + "title> ?title }"));
+
+        assertFalse(requirements.isUnrestricted());
+        assertFalse(requirements.needsContainment());
+        assertFalse(requirements.needsServerManaged());
+        assertFalse(requirements.needsInboundReferences());
+        assertEquals("return=representation; omit=\"" + PREFER_CONTAINMENT + " " + PREFER_SERVER_MANAGED + "\"",
+                requirements.preferHeader());
+    }
+
+    @Test
+    public void testQueryOfChildren() {
+        final TripleRequirements requirements = forQuery(create(
+                "SELECT ?child WHERE { ?s <http://www.w3.org/ns/ldp#contains> ?child }"));
+
+        assertTrue(requirements.needsContainment());
+        assertFalse(requirements.needsServerManaged());
+    }
+
+    @Test
+    public void testQueryOfTypes() {
+        final TripleRequirements requirements = forQuery(create(
+                "SELECT ?type WHERE { ?s a ?type . OPTIONAL { ?s <" + DC + "title> ?title } }"));
+
+        assertFalse(requirements.needsContainment());
+        assertTrue(requirements.needsServerManaged());
+    }
+
+    @Test
+    public void testUnanalyzableQueries() {
+        assertEquals(ALL, forQuery(create("SELECT * WHERE { ?s ?p ?o }")));
+        assertEquals(ALL, forQuery(create("DESCRIBE <info:fedora/object>")));
+        assertEquals(ALL, forQuery(create("SELECT ?t WHERE { ?s <" + DC + "relation>/<" + DC + "title> ?t }")));
+        assertEquals(ALL, forQuery(create("SELECT ?s WHERE { ?s <" + DC + "title> ?t "
+                + "FILTER NOT EXISTS { ?s ?p ?t } }")));
+        assertEquals(ALL, forQuery(create("SELECT ?t WHERE { { SELECT ?t WHERE { ?s <" + DC + "title> ?t } } }")));
+        assertEquals(ALL, forQuery(create("SELECT ?s ?b WHERE { ?s <" + DC + "title> ?t "
+                + "BIND (IF(EXISTS { ?s ?p ?t }, 1, 0) AS ?b) }")));
+        assertNull(ALL.preferHeader());
+    }
+
+    @Test
+    public void testQueryFilteringOnText() {
+        assertEquals(of(ImmutableList.of(DC + "title"), false), forQuery(create(
+                "SELECT ?s WHERE { ?s <" + DC + "title> ?t FILTER (CONTAINS(?t, \"exists\")) }")));
+    }
+
+    @Test
+    public void testLdpathPrefixedAndFullProperties() {
+        final TripleRequirements requirements = ldpath("@prefix dc : <" + DC + "> ;\n"
+                + "title = dc:title :: xsd:string ;\n"
+                + "subject = <" + DC + "subject> :: xsd:string ;\n");
+
+        assertEquals(of(ImmutableList.of(DC + "title", DC + "subject"), false), requirements);
+        assertFalse(requirements.needsContainment());
+        assertFalse(requirements.needsServerManaged());
+        assertFalse(requirements.needsInboundReferences());
+    }
+
+    @Test
+    public void testLdpathReverseProperty() {
+        final TripleRequirements requirements = ldpath("parts = ^<" + DC + "relation> :: xsd:string ;");
+
+        assertTrue(requirements.needsInboundReferences());
+        assertTrue(requirements.preferHeader().contains("include=\"" + PREFER_INBOUND_REFERENCES + "\""));
+    }
+
+    @Test
+    public void testLdpathRepositoryProperties() {
+        final TripleRequirements requirements = ldpath("@prefix ldp : <http://www.w3.org/ns/ldp#> ;\n"
+                + "@prefix fedora : <http://fedora.info/definitions/v4/repository#> ;\n"
+                + "children = ldp:contains :: xsd:string ;\ncreated = fedora:created :: xsd:string ;");
+
+        assertTrue(requirements.needsContainment());
+        assertTrue(requirements.needsServerManaged());
+    }
+
+    @Test
+    public void testLdpathNestedPaths() {
+        final TripleRequirements requirements = ldpath("@prefix dc : <" + DC + "> ;\n"
+                + "related = dc:relation[dc:type is \"book\"] / dc:title :: xsd:string ;\n"
+                + "part = (dc:isPartOf) :: xsd:string ;");
+
+        assertEquals(of(ImmutableList.of(DC + "relation", DC + "type", DC + "title", DC + "isPartOf"), false),
+                requirements);
+    }
+
+    @Test
+    public void testLdpathRecursivePath() {
+        assertEquals(ALL, ldpath("@prefix dc : <" + DC + "> ;\nancestors = (dc:isPartOf)* :: xsd:string ;"));
+    }
+
+    @Test
+    public void testLdpathWildcard() {
+        assertEquals(ALL, ldpath("all = * :: xsd:string ;"));
+        assertEquals(ALL, ldpath("@prefix dc : <" + DC + "> ;\nrelated = dc:relation / * :: xsd:string ;"));
+    }
+
+    @Test
+    public void testUnion() {
+        final TripleRequirements titles = of(ImmutableList.of(DC + "title"), false);
+        final TripleRequirements children = of(ImmutableList.of("http://www.w3.org/ns/ldp#contains"), true);
+
+        final TripleRequirements both = union(ImmutableList.of(titles, children));
+        assertTrue(both.needsContainment());
+        assertTrue(both.needsInboundReferences());
+        assertFalse(both.needsServerManaged());
+        assertEquals(ALL, union(ImmutableList.of(titles, ALL)));
+    }
+
+    @Test
+    public void testCompiledLdpathProgram() {
+        final LDPathTransform transform = new LDPathTransform(new ByteArrayInputStream(
+                ("@prefix dc : <" + DC + "> ;\nid = . :: xsd:string ;\ntitle = dc:title :: xsd:string ;")
+                        .getBytes(UTF_8)));
+
+        assertFalse(transform.requirements().needsContainment());
+        assertFalse(transform.requirements().needsServerManaged());
+    }
+
+    private static TripleRequirements ldpath(final String program) {
+        return new LDPathTransform(new ByteArrayInputStream(program.getBytes(UTF_8))).requirements();
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.http;
+
+import static com.hp.hpl.jena.graph.NodeFactory.createLiteral;
+import static com.hp.hpl.jena.rdf.model.ResourceFactory.createProperty;
+import static com.hp.hpl.jena.rdf.model.ResourceFactory.createResource;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ResourceContext;
+
+import org.fcrepo.kernel.api.utils.iterators.RdfStream;
+import org.fcrepo.transform.transformations.LDPathEvaluation;
+import org.fcrepo.transform.transformations.LDPathTransform;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * <p>FedoraTransformBatchTest class.</p>
+ *
+ * @author agent
+ */
+public class FedoraTransformBatchTest {
+
+    @Mock
+    private ResourceContext mockResourceContext;
+
+    @Mock
+    private FedoraTransform mockTransformA;
+
+    @Mock
+    private FedoraTransform mockTransformB;
+
+    private FedoraTransformBatch testObj;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        testObj = new FedoraTransformBatch();
+        setField(testObj, "resourceContext", mockResourceContext);
+        setField(testObj, "program", "default");
+        when(mockResourceContext.initResource(any(FedoraTransform.class))).thenReturn(mockTransformA,
+                mockTransformB);
+    }
+
+    @Test
+    public void testEvaluateLdpathProgram() throws Exception {
+        final RdfStream rdfStream = new RdfStream();
+        rdfStream.concat(new Triple(createResource("abc").asNode(),
+                createProperty("http://purl.org/dc/elements/1.1/title").asNode(),
+                createLiteral("some-title")));
+        rdfStream.topic(createResource("abc").asNode());
+        final LDPathEvaluation evaluation = new LDPathTransform(new ByteArrayInputStream(
+                "title = dc:title :: xsd:string ;".getBytes(UTF_8))).bind(rdfStream);
+
+        when(mockTransformA.bindLdpathProgram("default")).thenReturn(evaluation);
+        when(mockTransformB.bindLdpathProgram("default")).thenThrow(new WebApplicationException("no program"));
+
+        final ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        testObj.evaluateLdpathProgram(new ByteArrayInputStream("/a\n\n  b  \n".getBytes(UTF_8)))
+                .write(outStream);
+
+        final String[] lines = new String(outStream.toByteArray(), UTF_8).split("\n");
+        assertEquals(2, lines.length);
+
+        final ObjectMapper mapper = new ObjectMapper();
+        final JsonNode first = mapper.readTree(lines[0]);
+        assertEquals("/a", first.get("path").asText());
+        assertEquals("some-title", first.get("result").get(0).get("title").get(0).asText());
+        assertEquals("a", mockTransformA.externalPath);
+
+        final JsonNode second = mapper.readTree(lines[1]);
+        assertEquals("b", second.get("path").asText());
+        assertEquals("no program", second.get("error").asText());
+    }
+
+    @Test
+    public void testEvaluateLdpathProgramAsSmile() throws Exception {
+        final RdfStream rdfStream = new RdfStream();
+        rdfStream.concat(new Triple(createResource("abc").asNode(),
+                createProperty("http://purl.org/dc/elements/1.1/title").asNode(),
+                createLiteral("some-title")));
+        rdfStream.topic(createResource("abc").asNode());
+        final LDPathEvaluation evaluation = new LDPathTransform(new ByteArrayInputStream(
+                "title = dc:title :: xsd:string ;".getBytes(UTF_8))).bind(rdfStream);
+
+        when(mockTransformA.bindLdpathProgram("default")).thenReturn(evaluation);
+        when(mockTransformB.bindLdpathProgram("default")).thenThrow(new WebApplicationException("no program"));
+
+        final ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        testObj.evaluateLdpathProgramAsSmile(new ByteArrayInputStream("/a\nb\n".getBytes(UTF_8)))
+                .write(outStream);
+
+        final List<JsonNode> documents = new ObjectMapper(new SmileFactory()).readValues(
+                new SmileFactory().createParser(outStream.toByteArray()), JsonNode.class).readAll();
+        assertEquals(2, documents.size());
+        assertEquals("/a", documents.get(0).get("path").asText());
+        assertEquals("some-title", documents.get(0).get("result").get(0).get("title").get(0).asText());
+        assertEquals("no program", documents.get(1).get("error").asText());
+    }
+
+    @Test
+    public void testEvaluateLdpathProgramFieldFails() throws Exception {
+        final RdfStream rdfStream = new RdfStream();
+        rdfStream.concat(new Triple(createResource("abc").asNode(),
+                createProperty("http://purl.org/dc/elements/1.1/title").asNode(),
+                createLiteral("some-title")));
+        rdfStream.topic(createResource("abc").asNode());
+        final LDPathEvaluation evaluation = new LDPathTransform(new ByteArrayInputStream(
+                "title = dc:title :: xsd:string ;".getBytes(UTF_8))).bind(rdfStream);
+
+        final LDPathEvaluation failing = mock(LDPathEvaluation.class);
+        doAnswer(invocation -> {
+            ((LDPathEvaluation.FieldConsumer) invocation.getArguments()[0]).accept("title", asList("partial"));
+            throw new IllegalStateException("field failed");
+        }).when(failing).forEachField(any(LDPathEvaluation.FieldConsumer.class));
+
+        when(mockTransformA.bindLdpathProgram("default")).thenReturn(failing);
+        when(mockTransformB.bindLdpathProgram("default")).thenReturn(evaluation);
+
+        final ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        testObj.evaluateLdpathProgram(new ByteArrayInputStream("a\nb\n".getBytes(UTF_8))).write(outStream);
+
+        final String[] lines = new String(outStream.toByteArray(), UTF_8).split("\n");
+        assertEquals(2, lines.length);
+
+        final ObjectMapper mapper = new ObjectMapper();
+        final JsonNode first = mapper.readTree(lines[0]);
+        assertEquals("a", first.get("path").asText());
+        assertEquals("field failed", first.get("error").asText());
+        assertFalse(first.has("result"));
+
+        final JsonNode second = mapper.readTree(lines[1]);
+        assertEquals("b", second.get("path").asText());
+        assertEquals("some-title", second.get("result").get(0).get("title").get(0).asText());
+    }
+}
@@ -15,35 +15,97 @@
  */
 package org.fcrepo.transform.http;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static javax.ws.rs.core.HttpHeaders.VARY;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
+import static javax.ws.rs.core.MediaType.valueOf;
+import static javax.ws.rs.core.Response.Status.NOT_MODIFIED;
+import static javax.ws.rs.core.Response.Status.OK;
+import static javax.ws.rs.core.Response.notModified;
 import static org.apache.jena.riot.WebContent.contentTypeSPARQLQuery;
+import static org.apache.jena.riot.WebContent.contentTypeTextTSV;
 import static org.fcrepo.http.commons.test.util.TestHelpers.getUriInfoImpl;
 import static org.fcrepo.http.commons.test.util.TestHelpers.mockSession;
+import static org.fcrepo.metrics.RegistryService.getInstance;
+import static org.fcrepo.transform.http.responses.LDPathEvaluationProvider.APPLICATION_SMILE_TYPE;
+import static org.fcrepo.transform.transformations.LDPathTransform.CONFIGURATION_FOLDER;
+import static org.fcrepo.transform.transformations.LDPathTransform.programLocations;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
+import static org.springframework.test.util.ReflectionTestUtils.getField;
 import static org.springframework.test.util.ReflectionTestUtils.setField;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 import javax.jcr.Node;
+import javax.jcr.PathNotFoundException;
+import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.nodetype.NodeType;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.core.Variant;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
 
+import org.fcrepo.http.commons.domain.MultiPrefer;
 import org.fcrepo.kernel.api.identifiers.IdentifierConverter;
 import org.fcrepo.kernel.api.services.NodeService;
 import org.fcrepo.kernel.api.utils.iterators.RdfStream;
 import org.fcrepo.kernel.modeshape.FedoraResourceImpl;
 import org.fcrepo.transform.Transformation;
 import org.fcrepo.transform.TransformationFactory;
+import org.fcrepo.transform.TripleRequirements;
+import org.fcrepo.transform.http.responses.LDPathEvaluationProvider;
+import org.fcrepo.transform.http.responses.TransformResultCache;
+import org.fcrepo.transform.precompute.LdpathPrecomputer;
+import org.fcrepo.transform.transformations.LDPathEvaluation;
+import org.fcrepo.transform.transformations.LDPathEvaluations;
+import org.fcrepo.transform.transformations.SparqlQueryTransform;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.hp.hpl.jena.query.QueryExecution;
+
 /**
  * <p>FedoraTransformTest class.</p>
  *
@@ -51,6 +113,8 @@ import org.mockito.Mock;
  */
 public class FedoraTransformTest {
 
+    private static final String INBOUND_REFERENCES = "http://fedora.info/definitions/v4/repository#InboundReferences";
+
     @Mock
     NodeService mockNodeService;
 
@@ -72,6 +136,12 @@ public class FedoraTransformTest {
     @Mock
     Transformation<Object> mockTransform;
 
+    @Mock
+    private Request mockRequest;
+
+    @Mock
+    private Providers mockProviders;
+
     @Before
     public void setUp() {
         initMocks(this);
@@ -86,7 +156,11 @@ public class FedoraTransformTest {
 
         when(mockResource.getNode()).thenReturn(mockNode);
         when(mockResource.getPath()).thenReturn("/testObject");
+        when(mockResource.getEtagValue()).thenReturn("resource-etag");
+        setField(testObj, "request", mockRequest);
+        setField(testObj, "providers", mockProviders);
         doReturn(mockResource).when(testObj).getResourceFromPath("testObject");
+        when(mockTransform.requirements()).thenReturn(TripleRequirements.ALL);
     }
 
     @Test
@@ -108,5 +182,376 @@ public class FedoraTransformTest {
         verify(mockTransform).apply(any(RdfStream.class));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEvaluateLdpathProgram() throws RepositoryException {
+        mockProgram("default");
+        when(mockResource.getTriples(any(IdentifierConverter.class), any(Class.class))).thenReturn(new RdfStream());
+
+        final Response response = testObj.evaluateLdpathProgram("default");
+
+        assertEquals(OK.getStatusCode(), response.getStatus());
+        assertTrue(response.getEntity() instanceof LDPathEvaluation);
+        assertNotNull(response.getEntityTag());
+        assertFalse(response.getEntityTag().isWeak());
+        final MultiPrefer prefer = (MultiPrefer) getField(testObj, "prefer");
+        assertTrue("Only the triples the program reads should be generated", prefer.hasReturn());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEvaluateLdpathProgramAsync() throws RepositoryException {
+        mockProgram("default");
+        when(mockResource.getTriples(any(IdentifierConverter.class), any(Class.class))).thenReturn(new RdfStream());
+        setField(testObj, "executor", new TransformExecutor(1, 1, 1));
+        final AsyncResponse mockResponse = mock(AsyncResponse.class);
+
+        testObj.evaluateLdpathProgramAsync("default", mockResponse);
+
+        final ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+        verify(mockResponse, timeout(1000)).resume(captor.capture());
+        assertEquals(OK.getStatusCode(), captor.getValue().getStatus());
+        assertTrue(captor.getValue().getEntity() instanceof LDPathEvaluation);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEvaluateLdpathProgramAsyncResolvesRequestFirst() throws RepositoryException {
+        mockProgram("default");
+        when(mockResource.getTriples(any(IdentifierConverter.class), any(Class.class))).thenReturn(new RdfStream());
+        final TransformExecutor mockExecutor = mock(TransformExecutor.class);
+        setField(testObj, "executor", mockExecutor);
+
+        testObj.evaluateLdpathProgramAsync("default", mock(AsyncResponse.class));
+
+        verify(testObj).resourceTriples(any(TripleRequirements.class));
+        verify(mockExecutor).submit(any(AsyncResponse.class), any(Function.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEvaluateLdpathPrograms() throws RepositoryException {
+        mockProgram("default");
+        mockProgram("other");
+        when(mockResource.getTriples(any(IdentifierConverter.class), any(Class.class))).thenReturn(new RdfStream());
+
+        final Response response = testObj.evaluateLdpathProgram("default, other,default");
+
+        assertEquals(OK.getStatusCode(), response.getStatus());
+        final LDPathEvaluations evaluations = (LDPathEvaluations) response.getEntity();
+        assertEquals(ImmutableList.of("default", "other"), ImmutableList.copyOf(evaluations.evaluations().keySet()));
+        verify(testObj, times(1)).resourceTriples(any(TripleRequirements.class));
+        assertNotEquals(testObj.evaluateLdpathProgram("default").getEntityTag(), response.getEntityTag());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEvaluateRepeatedLdpathProgram() throws RepositoryException {
+        mockProgram("default");
+        when(mockResource.getTriples(any(IdentifierConverter.class), any(Class.class))).thenReturn(new RdfStream());
+        final EntityTag etag = testObj.evaluateLdpathProgram("default").getEntityTag();
+
+        for (final String programList : ImmutableList.of("default,", "default,default", " default ")) {
+            final Response response = testObj.evaluateLdpathProgram(programList);
+
+            assertTrue(response.getEntity() instanceof LDPathEvaluation);
+            assertEquals(etag, response.getEntityTag());
+        }
+    }
+
+    @Test
+    public void testUnknownProgramRegistersNoMetrics() throws RepositoryException {
+        when(mockNode.getSession()).thenReturn(mockSession);
+        when(mockSession.getNode(CONFIGURATION_FOLDER + "unknown")).thenThrow(new PathNotFoundException());
+
+        try {
+            testObj.evaluateLdpathProgram("unknown");
+            fail("An unknown program should not be evaluated");
+        } catch (final PathNotFoundException e) {
+            assertTrue(getInstance().getMetrics().getNames().stream().noneMatch(name -> name.contains("unknown")));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEvaluateLdpathProgramAsSmileAsync() throws RepositoryException {
+        mockProgram("default");
+        when(mockResource.getTriples(any(IdentifierConverter.class), any(Class.class))).thenReturn(new RdfStream());
+        setField(testObj, "executor", new TransformExecutor(1, 1, 1));
+        final AsyncResponse mockResponse = mock(AsyncResponse.class);
+
+        testObj.evaluateLdpathProgramAsSmileAsync("default", mockResponse);
+
+        final ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+        verify(mockResponse, timeout(1000)).resume(captor.capture());
+        assertEquals(APPLICATION_SMILE_TYPE, captor.getValue().getMediaType());
+        assertNotEquals("Each representation needs its own entity tag",
+                testObj.evaluateLdpathProgram("default").getEntityTag(), captor.getValue().getEntityTag());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEvaluateLdpathProgramCached() throws RepositoryException {
+        mockProgram("default");
+        when(mockResource.getTriples(any(IdentifierConverter.class), any(Class.class))).thenReturn(new RdfStream());
+        setField(testObj, "resultCache", new TransformResultCache(1024 * 1024, ImmutableSet.of("default"), false));
+        when(mockProviders.getMessageBodyWriter(LDPathEvaluation.class, LDPathEvaluation.class, new Annotation[0],
+                APPLICATION_JSON_TYPE)).thenReturn(new LDPathEvaluationProvider());
+
+        final Response first = testObj.evaluateLdpathProgram("default");
+        verify(mockResource, atLeastOnce()).getTriples(any(IdentifierConverter.class), any(Class.class));
+        reset(mockResource);
+        when(mockResource.getNode()).thenReturn(mockNode);
+        when(mockResource.getPath()).thenReturn("/testObject");
+        when(mockResource.getEtagValue()).thenReturn("resource-etag");
+        final Response second = testObj.evaluateLdpathProgram("default");
+
+        assertTrue(first.getEntity() instanceof byte[]);
+        assertArrayEquals((byte[]) first.getEntity(), (byte[]) second.getEntity());
+        assertEquals(first.getEntityTag(), second.getEntityTag());
+        verify(mockResource, never()).getTriples(any(IdentifierConverter.class), any(Class.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEvaluateLdpathProgramCachedPerBaseUri() throws RepositoryException {
+        mockProgram("default");
+        when(mockResource.getTriples(any(IdentifierConverter.class), any(Class.class))).thenReturn(new RdfStream());
+        setField(testObj, "resultCache", new TransformResultCache(1024 * 1024, ImmutableSet.of("default"), false));
+        when(mockProviders.getMessageBodyWriter(LDPathEvaluation.class, LDPathEvaluation.class, new Annotation[0],
+                APPLICATION_JSON_TYPE)).thenReturn(new LDPathEvaluationProvider());
+
+        testObj.evaluateLdpathProgram("default");
+        final UriInfo otherUriInfo = getUriInfoImpl();
+        when(otherUriInfo.getBaseUri()).thenReturn(URI.create("http://example.org/rest/"));
+        setField(testObj, "uriInfo", otherUriInfo);
+        testObj.evaluateLdpathProgram("default");
+
+        verify(testObj, times(2)).resourceTriples(any(TripleRequirements.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEvaluateLdpathProgramCoalesced() throws RepositoryException {
+        mockProgram("default");
+        when(mockResource.getTriples(any(IdentifierConverter.class), any(Class.class))).thenReturn(new RdfStream());
+        setField(testObj, "coalesce", true);
+        when(mockProviders.getMessageBodyWriter(LDPathEvaluation.class, LDPathEvaluation.class, new Annotation[0],
+                APPLICATION_JSON_TYPE)).thenReturn(new LDPathEvaluationProvider());
+
+        final Response response = testObj.evaluateLdpathProgram("default");
+
+        assertEquals(OK.getStatusCode(), response.getStatus());
+        assertTrue(response.getEntity() instanceof byte[]);
+        assertNotNull(response.getEntityTag());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEvaluateLdpathProgramCoalescedAsync() throws RepositoryException {
+        mockProgram("default");
+        when(mockResource.getTriples(any(IdentifierConverter.class), any(Class.class))).thenReturn(new RdfStream());
+        setField(testObj, "coalesce", true);
+        setField(testObj, "executor", new TransformExecutor(1, 1, 1));
+        when(mockProviders.getMessageBodyWriter(LDPathEvaluation.class, LDPathEvaluation.class, new Annotation[0],
+                APPLICATION_JSON_TYPE)).thenReturn(new LDPathEvaluationProvider());
+        final AsyncResponse mockResponse = mock(AsyncResponse.class);
+
+        testObj.evaluateLdpathProgramAsync("default", mockResponse);
+
+        final ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+        verify(mockResponse, timeout(1000)).resume(captor.capture());
+        assertEquals(OK.getStatusCode(), captor.getValue().getStatus());
+        assertTrue(captor.getValue().getEntity() instanceof byte[]);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEvaluateLdpathProgramCoalescedFollowerReadsNoTriples() throws RepositoryException {
+        mockProgram("default");
+        when(mockResource.getTriples(any(IdentifierConverter.class), any(Class.class))).thenReturn(new RdfStream());
+        setField(testObj, "coalesce", true);
+        setField(testObj, "inFlight", new SingleFlight<String, byte[]>());
+        final TransformExecutor mockExecutor = mock(TransformExecutor.class);
+        setField(testObj, "executor", mockExecutor);
+        when(mockProviders.getMessageBodyWriter(LDPathEvaluation.class, LDPathEvaluation.class, new Annotation[0],
+                APPLICATION_JSON_TYPE)).thenReturn(new LDPathEvaluationProvider());
+
+        testObj.evaluateLdpathProgramAsync("default", mock(AsyncResponse.class));
+        testObj.evaluateLdpathProgramAsync("default", mock(AsyncResponse.class));
+        final ArgumentCaptor<Function> captor = ArgumentCaptor.forClass(Function.class);
+        verify(mockExecutor, times(2)).submit(any(AsyncResponse.class), captor.capture());
+
+        final List<Runnable> tasks = new ArrayList<>();
+        final CompletableFuture<Response> leader =
+                (CompletableFuture<Response>) captor.getAllValues().get(0).apply((Executor) tasks::add);
+        final CompletableFuture<Response> follower =
+                (CompletableFuture<Response>) captor.getAllValues().get(1).apply((Executor) tasks::add);
+        verify(testObj, times(1)).resourceTriples(any(TripleRequirements.class));
+        tasks.forEach(Runnable::run);
+
+        assertEquals(1, tasks.size());
+        assertArrayEquals((byte[]) leader.join().getEntity(), (byte[]) follower.join().getEntity());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPostedQueryCachedPerTimeout() throws Exception {
+        when(mockResource.getTriples(any(IdentifierConverter.class), any(Class.class))).thenReturn(new RdfStream());
+        setField(testObj, "resultCache", new TransformResultCache(1024 * 1024, ImmutableSet.of(), true));
+        final MediaType tsv = valueOf(contentTypeTextTSV);
+        when(mockRequest.selectVariant(any(List.class))).thenReturn(new Variant(tsv, (String) null, null));
+        final MessageBodyWriter<QueryExecution> mockWriter = mock(MessageBodyWriter.class);
+        when(mockProviders.getMessageBodyWriter(QueryExecution.class, QueryExecution.class, new Annotation[0], tsv))
+                .thenReturn(mockWriter);
+        final SparqlQueryTransform query = new SparqlQueryTransform(
+                new ByteArrayInputStream("SELECT ?s WHERE { ?s ?p ?o }".getBytes(UTF_8)));
+        doReturn(query).when(mockTransformationFactory).getTransform(any(MediaType.class), any(InputStream.class));
+        final MediaType sparql = valueOf(contentTypeSPARQLQuery);
+
+        setField(testObj, "requestedTimeout", 1000L);
+        testObj.evaluateTransform(sparql, new ByteArrayInputStream(new byte[0]));
+        testObj.evaluateTransform(sparql, new ByteArrayInputStream(new byte[0]));
+        setField(testObj, "requestedTimeout", 2000L);
+        testObj.evaluateTransform(sparql, new ByteArrayInputStream(new byte[0]));
+
+        verify(mockWriter, times(2)).writeTo(any(QueryExecution.class), eq(QueryExecution.class),
+                eq(QueryExecution.class), any(Annotation[].class), eq(tsv), any(MultivaluedMap.class),
+                any(OutputStream.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEvaluateLdpathProgramPrecomputed() throws RepositoryException {
+        mockProgram("default");
+        when(mockResource.getTriples(any(IdentifierConverter.class), any(Class.class))).thenReturn(new RdfStream());
+        final EntityTag etag = testObj.evaluateLdpathProgram("default").getEntityTag();
+        final LdpathPrecomputer mockPrecomputer = mock(LdpathPrecomputer.class);
+        final byte[] precomputed = "[{\"title\":[\"stored\"]}]".getBytes(UTF_8);
+        when(mockPrecomputer.lookup(any(String.class), eq("default"), eq(etag))).thenReturn(precomputed);
+        setField(testObj, "precomputer", mockPrecomputer);
+
+        final Response response = testObj.evaluateLdpathProgram("default");
+
+        assertEquals(OK.getStatusCode(), response.getStatus());
+        assertArrayEquals(precomputed, (byte[]) response.getEntity());
+        assertEquals("A precomputed result is tagged as a live one would be", etag, response.getEntityTag());
+        verify(testObj, times(1)).resourceTriples(any(TripleRequirements.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEvaluateLdpathProgramPrecomputedStale() throws RepositoryException {
+        mockProgram("default");
+        when(mockResource.getTriples(any(IdentifierConverter.class), any(Class.class))).thenReturn(new RdfStream());
+        final LdpathPrecomputer mockPrecomputer = mock(LdpathPrecomputer.class);
+        setField(testObj, "precomputer", mockPrecomputer);
+
+        final Response response = testObj.evaluateLdpathProgram("default");
+
+        assertTrue(response.getEntity() instanceof LDPathEvaluation);
+        verify(testObj).resourceTriples(any(TripleRequirements.class));
+        final MultiPrefer prefer = (MultiPrefer) getField(testObj, "prefer");
+        assertTrue("The program's own triples are generated", prefer.hasReturn());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEvaluateLdpathProgramPrecomputedIgnoredWithPreference() throws RepositoryException {
+        mockProgram("default");
+        when(mockResource.getTriples(any(IdentifierConverter.class), any(Class.class))).thenReturn(new RdfStream());
+        final LdpathPrecomputer mockPrecomputer = mock(LdpathPrecomputer.class);
+        when(mockPrecomputer.lookup(any(String.class), eq("default"), any(EntityTag.class)))
+                .thenReturn("[]".getBytes(UTF_8));
+        setField(testObj, "precomputer", mockPrecomputer);
+        setField(testObj, "preferHeader", "return=representation; include=\"" + INBOUND_REFERENCES + "\"");
+
+        final Response response = testObj.evaluateLdpathProgram("default");
+
+        assertTrue(response.getEntity() instanceof LDPathEvaluation);
+        verify(mockPrecomputer, never()).lookup(any(String.class), any(String.class), any(EntityTag.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEvaluateLdpathProgramNotModified() throws RepositoryException {
+        mockProgram("default");
+        when(mockRequest.evaluatePreconditions(any(EntityTag.class))).thenReturn(notModified());
+
+        final Response response = testObj.evaluateLdpathProgram("default");
+
+        assertEquals(NOT_MODIFIED.getStatusCode(), response.getStatus());
+        verify(mockResource, never()).getTriples(any(IdentifierConverter.class), any(Class.class));
+    }
+
+    @Test
+    public void testTransformEtag() {
+        final EntityTag etag = testObj.transformEtag("program-version");
+        assertEquals(etag, testObj.transformEtag("program-version"));
+        assertNotEquals(etag, testObj.transformEtag("other-version"));
+
+        when(mockResource.getEtagValue()).thenReturn("changed");
+        assertNotEquals(etag, testObj.transformEtag("program-version"));
+    }
+
+    @Test
+    public void testClientPreference() {
+        assertNull(testObj.clientPreference());
+
+        setField(testObj, "preferHeader", "return=representation; include=\"" + INBOUND_REFERENCES + "\"");
+        assertEquals("return=representation; include=\"" + INBOUND_REFERENCES + "\"", testObj.clientPreference());
+
+        setField(testObj, "omit", ImmutableList.of("ldp:PreferContainment,ldp:PreferMembership"));
+        assertEquals("return=representation; omit=\"http://www.w3.org/ns/ldp#PreferContainment "
+                + "http://www.w3.org/ns/ldp#PreferMembership\"", testObj.clientPreference());
+    }
+
+    @Test
+    public void testTransformEtagVariesWithPreference() {
+        final EntityTag etag = testObj.transformEtag("program-version");
+        setField(testObj, "include", ImmutableList.of("fedora:EmbedResources"));
+        assertNotEquals(etag, testObj.transformEtag("program-version"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEvaluateLdpathProgramWithPreference() throws RepositoryException {
+        mockProgram("default");
+        when(mockResource.getTriples(any(IdentifierConverter.class), any(Class.class))).thenReturn(new RdfStream());
+        setField(testObj, "include", ImmutableList.of("ldp:PreferContainment"));
+
+        final Response response = testObj.evaluateLdpathProgram("default");
+
+        assertEquals("Accept, Prefer", response.getHeaderString(VARY));
+        final MultiPrefer prefer = (MultiPrefer) getField(testObj, "prefer");
+        assertTrue(prefer.getReturn().getParams().get("include").contains("PreferContainment"));
+    }
+
+    @Test
+    public void testTransformLastModified() {
+        when(mockResource.getLastModifiedDate()).thenReturn(new Date(1500));
+        assertNull(testObj.transformLastModified(null));
+        assertEquals(new Date(1000), testObj.transformLastModified(new Date(500)));
+        assertEquals(new Date(2000), testObj.transformLastModified(new Date(2500)));
+    }
+
+    private void mockProgram(final String key) throws RepositoryException {
+        programLocations().invalidateAll();
+        final Node mockConfigNode = mock(Node.class);
+        final Node mockTypeConfigNode = mock(Node.class, RETURNS_DEEP_STUBS);
+        final NodeType mockNodeType = mock(NodeType.class);
+        when(mockNode.getSession()).thenReturn(mockSession);
+        when(mockSession.getNode(CONFIGURATION_FOLDER + key)).thenReturn(mockConfigNode);
+        when(mockNode.getPrimaryNodeType()).thenReturn(mockNodeType);
+        when(mockNode.getMixinNodeTypes()).thenReturn(new NodeType[] {});
+        when(mockNodeType.getSupertypes()).thenReturn(new NodeType[] {});
+        when(mockNodeType.getName()).thenReturn("nt:base");
+        when(mockNodeType.toString()).thenReturn("nt:base");
+        when(mockConfigNode.hasNode("nt:base")).thenReturn(true);
+        when(mockConfigNode.getNode("nt:base")).thenReturn(mockTypeConfigNode);
+        when(mockTypeConfigNode.getNode("jcr:content").getProperty("jcr:data").getBinary().getStream()).thenAnswer(
+                invocation -> new ByteArrayInputStream("title = dc:title :: xsd:string ;".getBytes()));
+    }
+
 
 }
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.http;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * @author agent
+ */
+public class SingleFlightTest {
+
+    private final SingleFlight<String, String> testObj = new SingleFlight<>();
+
+    // one thread, so that a caller sharing a computation can only be answered without holding one
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentCallsShareOneComputation() throws Exception {
+        final AtomicInteger preparations = new AtomicInteger();
+        final AtomicInteger computations = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final CompletableFuture<String> leader = testObj.get("key", executor, () -> {
+            preparations.incrementAndGet();
+            return () -> {
+                computations.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "value";
+            };
+        });
+        started.await();
+        final CompletableFuture<String> follower = testObj.get("key", executor, () -> {
+            preparations.incrementAndGet();
+            return () -> {
+                computations.incrementAndGet();
+                return "other";
+            };
+        });
+        assertEquals(1, testObj.coalescedCount());
+        assertFalse(follower.isDone());
+        release.countDown();
+
+        assertEquals("value", leader.get(1, SECONDS));
+        assertEquals("value", follower.get(1, SECONDS));
+        assertEquals("Only the leader prepares the computation", 1, preparations.get());
+        assertEquals(1, computations.get());
+        assertEquals(0, testObj.inFlight());
+    }
+
+    @Test
+    public void testFailureIsShared() throws Exception {
+        final IllegalStateException failure = new IllegalStateException("no program");
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final CompletableFuture<String> leader = testObj.get("key", executor, () -> () -> {
+            started.countDown();
+            await(release);
+            throw failure;
+        });
+        started.await();
+        final CompletableFuture<String> follower = testObj.get("key", executor, () -> () -> "other");
+        release.countDown();
+
+        for (final CompletableFuture<String> call : ImmutableList.of(leader, follower)) {
+            try {
+                call.get(1, SECONDS);
+                fail("Expected the computation's failure");
+            } catch (final ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+        }
+    }
+
+    @Test
+    public void testRejectionIsShared() throws Exception {
+        final CompletableFuture<String> call = testObj.get("key", task -> {
+            throw new RejectedExecutionException();
+        }, () -> () -> "value");
+
+        try {
+            call.get(1, SECONDS);
+            fail("Expected the executor's refusal");
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        assertEquals(0, testObj.inFlight());
+    }
+
+    @Test
+    public void testPreparationFailure() throws Exception {
+        final IllegalStateException failure = new IllegalStateException("no resource");
+        final CompletableFuture<String> call = testObj.get("key", executor, () -> {
+            throw failure;
+        });
+
+        try {
+            call.get(1, SECONDS);
+            fail("Expected the preparation's failure");
+        } catch (final ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+        assertEquals(0, testObj.inFlight());
+    }
+
+    @Test
+    public void testSequentialCallsComputeAgain() {
+        assertEquals("first", testObj.get("key", Runnable::run, () -> () -> "first").join());
+        assertEquals("second", testObj.get("key", Runnable::run, () -> () -> "second").join());
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.http;
+
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static javax.ws.rs.core.HttpHeaders.RETRY_AFTER;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * @author agent
+ */
+public class TransformExecutorTest {
+
+    private final TransformExecutor testObj = new TransformExecutor(1, 1, 7);
+
+    @Test
+    public void testSubmit() {
+        final AsyncResponse response = mock(AsyncResponse.class);
+
+        testObj.submit(response, executor -> supplyAsync(() -> "result", executor));
+
+        verify(response, timeout(1000)).resume("result");
+    }
+
+    @Test
+    public void testSubmitFailure() {
+        final AsyncResponse response = mock(AsyncResponse.class);
+        final IllegalStateException failure = new IllegalStateException("no program");
+
+        testObj.submit(response, executor -> supplyAsync(() -> {
+            throw failure;
+        }, executor));
+
+        verify(response, timeout(1000)).resume(failure);
+    }
+
+    @Test
+    public void testSubmitShared() {
+        final AsyncResponse response = mock(AsyncResponse.class);
+        final CompletableFuture<String> shared = new CompletableFuture<>();
+
+        testObj.submit(response, executor -> shared);
+        assertEquals(0, testObj.activeCount());
+        shared.complete("result");
+
+        verify(response).resume("result");
+    }
+
+    @Test
+    public void testSubmitSharedRefused() {
+        final AsyncResponse response = mock(AsyncResponse.class);
+        final CompletableFuture<String> shared = new CompletableFuture<>();
+        shared.completeExceptionally(new RejectedExecutionException());
+
+        testObj.submit(response, executor -> shared);
+
+        final ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+        verify(response).resume(captor.capture());
+        assertEquals(SERVICE_UNAVAILABLE.getStatusCode(), captor.getValue().getStatus());
+    }
+
+    @Test
+    public void testSubmitSaturated() throws InterruptedException {
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        testObj.submit(mock(AsyncResponse.class), executor -> supplyAsync(() -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "first";
+        }, executor));
+        running.await();
+        final AsyncResponse queued = mock(AsyncResponse.class);
+        testObj.submit(queued, executor -> supplyAsync(() -> "second", executor));
+        assertEquals(1, testObj.queuedCount());
+
+        final AsyncResponse refused = mock(AsyncResponse.class);
+        testObj.submit(refused, executor -> supplyAsync(() -> "third", executor));
+
+        final ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+        verify(refused).resume(captor.capture());
+        assertEquals(SERVICE_UNAVAILABLE.getStatusCode(), captor.getValue().getStatus());
+        assertEquals("7", captor.getValue().getHeaderString(RETRY_AFTER));
+
+        release.countDown();
+        verify(queued, timeout(1000)).resume("second");
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.http.responses;
+
+import static com.hp.hpl.jena.datatypes.xsd.XSDDatatype.XSDinteger;
+import static com.hp.hpl.jena.graph.NodeFactory.createLiteral;
+import static com.hp.hpl.jena.rdf.model.ResourceFactory.createProperty;
+import static com.hp.hpl.jena.rdf.model.ResourceFactory.createResource;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
+import static javax.ws.rs.core.MediaType.TEXT_HTML_TYPE;
+import static org.fcrepo.transform.http.responses.LDPathEvaluationProvider.APPLICATION_SMILE_TYPE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.fcrepo.kernel.api.utils.iterators.RdfStream;
+import org.fcrepo.transform.transformations.LDPathEvaluation;
+import org.fcrepo.transform.transformations.LDPathTransform;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * <p>LDPathEvaluationProviderTest class.</p>
+ *
+ * @author agent
+ */
+public class LDPathEvaluationProviderTest {
+
+    private final LDPathEvaluationProvider testObj = new LDPathEvaluationProvider();
+
+    @Test
+    public void testWriteTo() throws IOException {
+        final RdfStream rdfStream = new RdfStream();
+        rdfStream.concat(new Triple(createResource("abc").asNode(),
+                createProperty("http://purl.org/dc/elements/1.1/title").asNode(),
+                createLiteral("some-title")));
+        rdfStream.topic(createResource("abc").asNode());
+        final LDPathEvaluation evaluation = new LDPathTransform(new ByteArrayInputStream(
+                "title = dc:title :: xsd:string ;".getBytes())).bind(rdfStream);
+
+        final ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        testObj.writeTo(evaluation, LDPathEvaluation.class, LDPathEvaluation.class, null,
+                APPLICATION_JSON_TYPE, null, outStream);
+
+        final JsonNode result = new ObjectMapper().readTree(outStream.toByteArray());
+        assertEquals(1, result.size());
+        assertEquals("some-title", result.get(0).get("title").get(0).asText());
+    }
+
+    @Test
+    public void testWriteToSmile() throws IOException {
+        final RdfStream rdfStream = new RdfStream();
+        rdfStream.concat(new Triple(createResource("abc").asNode(),
+                createProperty("http://purl.org/dc/elements/1.1/title").asNode(),
+                createLiteral("some-title")));
+        rdfStream.concat(new Triple(createResource("abc").asNode(),
+                createProperty("http://purl.org/dc/elements/1.1/extent").asNode(),
+                createLiteral("42", XSDinteger)));
+        rdfStream.topic(createResource("abc").asNode());
+        final LDPathEvaluation evaluation = new LDPathTransform(new ByteArrayInputStream(
+                ("title = dc:title :: xsd:string ;\n"
+                        + "extent = dc:extent :: xsd:integer ;").getBytes())).bind(rdfStream);
+
+        final ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        testObj.writeTo(evaluation, LDPathEvaluation.class, LDPathEvaluation.class, null,
+                APPLICATION_SMILE_TYPE, null, outStream);
+
+        final JsonNode result = new ObjectMapper(new SmileFactory()).readTree(outStream.toByteArray());
+        assertEquals("some-title", result.get(0).get("title").get(0).asText());
+        assertTrue("Typed values should be written natively", result.get(0).get("extent").get(0).isNumber());
+        assertEquals(42, result.get(0).get("extent").get(0).asInt());
+    }
+
+    @Test
+    public void testIsWritable() {
+        assertTrue(testObj.isWriteable(LDPathEvaluation.class, LDPathEvaluation.class, null,
+                APPLICATION_JSON_TYPE));
+        assertTrue(testObj.isWriteable(LDPathEvaluation.class, LDPathEvaluation.class, null,
+                APPLICATION_SMILE_TYPE));
+        assertFalse(testObj.isWriteable(LDPathEvaluation.class, LDPathEvaluation.class, null,
+                TEXT_HTML_TYPE));
+        assertFalse(testObj.isWriteable(String.class, String.class, null, APPLICATION_JSON_TYPE));
+    }
+}
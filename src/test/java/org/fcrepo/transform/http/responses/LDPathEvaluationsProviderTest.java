@@ -0,0 +1,88 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.http.responses;
+
+import static com.hp.hpl.jena.graph.NodeFactory.createLiteral;
+import static com.hp.hpl.jena.rdf.model.ResourceFactory.createProperty;
+import static com.hp.hpl.jena.rdf.model.ResourceFactory.createResource;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
+import static javax.ws.rs.core.MediaType.TEXT_HTML_TYPE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.fcrepo.kernel.api.utils.iterators.RdfStream;
+import org.fcrepo.transform.transformations.LDPathEvaluation;
+import org.fcrepo.transform.transformations.LDPathEvaluations;
+import org.fcrepo.transform.transformations.LDPathTransform;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+
+/**
+ * @author agent
+ */
+public class LDPathEvaluationsProviderTest {
+
+    private final LDPathEvaluationsProvider testObj = new LDPathEvaluationsProvider();
+
+    @Test
+    public void testWriteTo() throws IOException {
+        final RdfStream rdfStream = new RdfStream();
+        rdfStream.concat(new Triple(createResource("abc").asNode(),
+                createProperty("http://purl.org/dc/elements/1.1/title").asNode(),
+                createLiteral("some-title")));
+        rdfStream.topic(createResource("abc").asNode());
+        final Model model = rdfStream.asModel();
+        final LDPathEvaluation solr = program("title = dc:title :: xsd:string ;").bind(model, rdfStream.topic());
+        final LDPathEvaluation oai = program("name = dc:title :: xsd:string ;").bind(model, rdfStream.topic());
+
+        final ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        testObj.writeTo(new LDPathEvaluations(ImmutableMap.of("solr", solr, "oai", oai)), LDPathEvaluations.class,
+                LDPathEvaluations.class, null, APPLICATION_JSON_TYPE, null, outStream);
+
+        final JsonNode result = new ObjectMapper().readTree(outStream.toByteArray());
+        final Iterator<String> programs = result.fieldNames();
+        assertEquals("solr", programs.next());
+        assertEquals("oai", programs.next());
+        assertEquals("some-title", result.get("solr").get(0).get("title").get(0).asText());
+        assertEquals("some-title", result.get("oai").get(0).get("name").get(0).asText());
+    }
+
+    @Test
+    public void testIsWritable() {
+        assertTrue(testObj.isWriteable(LDPathEvaluations.class, LDPathEvaluations.class, null,
+                APPLICATION_JSON_TYPE));
+        assertFalse(testObj.isWriteable(LDPathEvaluations.class, LDPathEvaluations.class, null,
+                TEXT_HTML_TYPE));
+        assertFalse(testObj.isWriteable(LDPathEvaluation.class, LDPathEvaluation.class, null,
+                APPLICATION_JSON_TYPE));
+    }
+
+    private static LDPathTransform program(final String program) {
+        return new LDPathTransform(new ByteArrayInputStream(program.getBytes(UTF_8)));
+    }
+}
@@ -20,16 +20,34 @@ import static com.hp.hpl.jena.graph.NodeFactory.createURI;
 import static com.hp.hpl.jena.rdf.model.ModelFactory.createDefaultModel;
 import static javax.ws.rs.core.MediaType.TEXT_HTML_TYPE;
 import static javax.ws.rs.core.MediaType.valueOf;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import static org.apache.jena.riot.WebContent.contentTypeJSONLD;
+import static org.apache.jena.riot.WebContent.contentTypeNTriples;
+import static org.apache.jena.riot.WebContent.contentTypeRDFXML;
+import static org.apache.jena.riot.WebContent.contentTypeResultsJSON;
 import static org.apache.jena.riot.WebContent.contentTypeResultsXML;
+import static org.apache.jena.riot.WebContent.contentTypeTextCSV;
+import static org.apache.jena.riot.WebContent.contentTypeTurtle;
 import static org.fcrepo.kernel.api.RdfLexicon.JCR_NAMESPACE;
 import static org.fcrepo.kernel.modeshape.rdf.JcrRdfTools.getRDFNamespaceForJcrNamespace;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 
+import javax.ws.rs.NotAcceptableException;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MultivaluedMap;
 
@@ -38,12 +56,15 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import com.google.common.collect.ImmutableList;
 import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.query.Dataset;
 import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryCancelledException;
 import com.hp.hpl.jena.query.QueryExecution;
 import com.hp.hpl.jena.query.QueryExecutionFactory;
 import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.query.ResultSet;
 import com.hp.hpl.jena.sparql.core.DatasetImpl;
 
 /**
@@ -95,6 +116,122 @@ public class QueryExecutionProviderTest {
         }
     }
 
+    @Test
+    public void testWriteToTimedOut() {
+        final QueryExecution mockExecution = mock(QueryExecution.class);
+        when(mockExecution.execSelect()).thenThrow(new QueryCancelledException());
+
+        try {
+            testObj.writeTo(mockExecution, QueryExecution.class, mock(Type.class), null,
+                    valueOf(contentTypeResultsXML), mockMultivaluedMap, new ByteArrayOutputStream());
+            fail("Expected the timed out query to be reported");
+        } catch (final WebApplicationException e) {
+            assertEquals(SERVICE_UNAVAILABLE.getStatusCode(), e.getResponse().getStatus());
+        }
+        verify(mockExecution).close();
+    }
+
+    @Test
+    public void testWriteToTimedOutWhileIterating() {
+        final QueryExecution mockExecution = mock(QueryExecution.class);
+        final ResultSet mockResults = mock(ResultSet.class);
+        when(mockExecution.execSelect()).thenReturn(mockResults);
+        when(mockResults.getResultVars()).thenReturn(ImmutableList.of("x"));
+        when(mockResults.hasNext()).thenThrow(new QueryCancelledException());
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try {
+            testObj.writeTo(mockExecution, QueryExecution.class, mock(Type.class), null,
+                    valueOf(contentTypeResultsXML), mockMultivaluedMap, output);
+            fail("Expected the timed out query to be reported");
+        } catch (final WebApplicationException e) {
+            assertEquals(SERVICE_UNAVAILABLE.getStatusCode(), e.getResponse().getStatus());
+        }
+        assertEquals(0, output.size());
+        verify(mockExecution).close();
+    }
+
+    @Test
+    public void testWriteToAbortsOnFailedWrite() throws IOException {
+        final QueryExecution execution = spy(QueryExecutionFactory.create(
+                QueryFactory.create("SELECT ?x WHERE { ?x ?y ?z }"), testData));
+        final OutputStream mockOutput = mock(OutputStream.class);
+        doThrow(new IOException("client went away")).when(mockOutput).write(any(byte[].class), anyInt(), anyInt());
+        doThrow(new IOException("client went away")).when(mockOutput).write(anyInt());
+        doThrow(new IOException("client went away")).when(mockOutput).flush();
+
+        try {
+            testObj.writeTo(execution, QueryExecution.class, mock(Type.class), null,
+                    valueOf(contentTypeResultsXML), mockMultivaluedMap, mockOutput);
+        } catch (final RuntimeException e) {
+            // the serializer reports the failure in its own way
+        }
+        verify(execution).abort();
+    }
+
+    @Test
+    public void testWriteConstructAsNTriples() throws IOException {
+        final String output = write("CONSTRUCT { ?x <test:copy> ?z } WHERE { ?x <test:predicate> ?z }",
+                contentTypeNTriples);
+        assertEquals("<test:subject> <test:copy> \"test:object\" .", output.trim());
+    }
+
+    @Test
+    public void testWriteConstructAsTurtle() throws IOException {
+        final String output = write("PREFIX ex: <http://example.org/>\n"
+                + "CONSTRUCT { ?x ex:copy ?z } WHERE { ?x <test:predicate> ?z }", contentTypeTurtle);
+        assertTrue(output.contains("@prefix ex:"));
+        assertTrue(output.contains("ex:copy"));
+    }
+
+    @Test
+    public void testWriteConstructAsRdfXml() throws IOException {
+        final String output = write("CONSTRUCT { ?x <http://example.org/copy> ?z } "
+                + "WHERE { ?x <test:predicate> ?z }", contentTypeRDFXML);
+        assertTrue(output.contains("rdf:RDF"));
+        assertTrue(output.contains("test:object"));
+    }
+
+    @Test
+    public void testWriteDescribe() throws IOException {
+        final String output = write("DESCRIBE <test:subject>", contentTypeNTriples);
+        assertTrue(output.contains("<test:predicate> \"test:object\""));
+    }
+
+    @Test(expected = NotAcceptableException.class)
+    public void testWriteConstructAsResults() throws IOException {
+        write("CONSTRUCT WHERE { ?x ?y ?z }", contentTypeResultsXML);
+    }
+
+    @Test
+    public void testWriteAskAsJson() throws IOException {
+        final String output = write("ASK { <test:subject> <test:predicate> ?z }", contentTypeResultsJSON);
+        assertTrue(output.matches("(?s).*\"boolean\"\\s*:\\s*true.*"));
+    }
+
+    @Test
+    public void testWriteAskAsXml() throws IOException {
+        final String output = write("ASK { <test:subject> <test:missing> ?z }", contentTypeResultsXML);
+        assertTrue(output.contains("<boolean>false</boolean>"));
+    }
+
+    @Test
+    public void testWriteAskAsCsv() throws IOException {
+        assertTrue(write("ASK { ?x ?y ?z }", contentTypeTextCSV).trim().endsWith("true"));
+    }
+
+    @Test(expected = NotAcceptableException.class)
+    public void testWriteAskAsRdf() throws IOException {
+        write("ASK { ?x ?y ?z }", contentTypeTurtle);
+    }
+
+    private String write(final String query, final String mediaType) throws IOException {
+        final ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        testObj.writeTo(QueryExecutionFactory.create(QueryFactory.create(query), testData), QueryExecution.class,
+                mock(Type.class), null, valueOf(mediaType), mockMultivaluedMap, outStream);
+        return outStream.toString("UTF-8");
+    }
+
     @Test
     public void testGetSize() {
         assertEquals("Returned wrong size from QueryExecutionProvider!",
@@ -119,6 +256,9 @@ public class QueryExecutionProviderTest {
                 "RdfProvider.isWriteable() should return false to text/html!",
                 testObj.isWriteable(QueryExecution.class, QueryExecution.class,
                         null, TEXT_HTML_TYPE));
+        assertTrue("CONSTRUCT results may be written as JSON-LD",
+                testObj.isWriteable(QueryExecution.class, QueryExecution.class,
+                        null, valueOf(contentTypeJSONLD)));
 
     }
 }
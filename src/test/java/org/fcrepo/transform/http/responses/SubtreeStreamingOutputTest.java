@@ -0,0 +1,160 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.http.responses;
+
+import static com.hp.hpl.jena.graph.NodeFactory.createLiteral;
+import static com.hp.hpl.jena.query.QueryExecutionFactory.create;
+import static com.hp.hpl.jena.rdf.model.ModelFactory.createDefaultModel;
+import static com.hp.hpl.jena.rdf.model.ResourceFactory.createProperty;
+import static com.hp.hpl.jena.rdf.model.ResourceFactory.createResource;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.fcrepo.kernel.api.FedoraJcrTypes.FEDORA_PAIRTREE;
+import static org.fcrepo.kernel.api.FedoraJcrTypes.FEDORA_RESOURCE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.PathNotFoundException;
+import javax.jcr.RepositoryException;
+
+import org.fcrepo.kernel.api.utils.iterators.RdfStream;
+import org.fcrepo.transform.transformations.LDPathTransform;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+
+/**
+ * <p>SubtreeStreamingOutputTest class.</p>
+ *
+ * @author agent
+ */
+public class SubtreeStreamingOutputTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testWrite() throws Exception {
+        final Node grandchild = mockNode("/root/b/d", FEDORA_RESOURCE);
+        final Node pairtreeChild = mockNode("/root/pt/c", FEDORA_RESOURCE);
+        final Node pairtree = mockNode("/root/pt", FEDORA_PAIRTREE, pairtreeChild);
+        final Node child = mockNode("/root/b", FEDORA_RESOURCE, grandchild);
+        final Node content = mockNode("/root/jcr:content", FEDORA_RESOURCE);
+        final Node missing = mockNode("/root/missing", FEDORA_RESOURCE);
+        final Node root = mockNode("/root", FEDORA_RESOURCE, content, child, pairtree, missing);
+
+        final SubtreeStreamingOutput testObj = new SubtreeStreamingOutput(root, 1, path -> {
+            if (path.endsWith("missing")) {
+                throw new PathNotFoundException("gone");
+            }
+            return () -> "\"" + path + "\"";
+        });
+
+        final Map<String, JsonNode> lines = write(testObj);
+        assertEquals(4, lines.size());
+        assertEquals("/root", lines.get("/root").get("result").asText());
+        assertEquals("/root/b", lines.get("/root/b").get("result").asText());
+        assertEquals("/root/pt/c", lines.get("/root/pt/c").get("result").asText());
+        assertEquals("gone", lines.get("/root/missing").get("error").asText());
+        assertFalse(lines.containsKey("/root/b/d"));
+    }
+
+    @Test
+    public void testWriteFailedTransform() throws Exception {
+        final Node root = mockNode("/root", FEDORA_RESOURCE);
+
+        final SubtreeStreamingOutput testObj = new SubtreeStreamingOutput(root, -1, path -> () -> {
+            throw new IllegalStateException("broken");
+        });
+
+        final Map<String, JsonNode> lines = write(testObj);
+        assertEquals("broken", lines.get("/root").get("error").asText());
+    }
+
+    @Test
+    public void testLdpathResult() throws Exception {
+        final RdfStream rdfStream = new RdfStream();
+        rdfStream.concat(new Triple(createResource("abc").asNode(),
+                createProperty("http://purl.org/dc/elements/1.1/title").asNode(),
+                createLiteral("some-title")));
+        rdfStream.topic(createResource("abc").asNode());
+
+        final String result = SubtreeStreamingOutput.ldpathResult(new LDPathTransform(new ByteArrayInputStream(
+                "title = dc:title :: xsd:string ;".getBytes(UTF_8))).bind(rdfStream)).call();
+
+        assertEquals("some-title", mapper.readTree(result).get(0).get("title").get(0).asText());
+    }
+
+    @Test
+    public void testSparqlResult() throws Exception {
+        final Model model = createDefaultModel();
+        model.add(createResource("info:abc"), createProperty("http://purl.org/dc/elements/1.1/title"), "some-title");
+
+        final String select = SubtreeStreamingOutput.sparqlResult(create(
+                "SELECT ?title WHERE { ?s <http://purl.org/dc/elements/1.1/title> ?title }", model)).call();
+        assertFalse(select.contains("\n"));
+        assertEquals("some-title", mapper.readTree(select).get("results").get("bindings").get(0).get("title")
+                .get("value").asText());
+
+        final String ask = SubtreeStreamingOutput.sparqlResult(create(
+                "ASK { ?s <http://purl.org/dc/elements/1.1/title> \"some-title\" }", model)).call();
+        assertTrue(mapper.readTree(ask).get("boolean").asBoolean());
+    }
+
+    private Map<String, JsonNode> write(final SubtreeStreamingOutput testObj) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        testObj.write(out);
+
+        final Map<String, JsonNode> lines = new HashMap<>();
+        for (final String line : new String(out.toByteArray(), UTF_8).split("\n")) {
+            final JsonNode json = mapper.readTree(line);
+            lines.put(json.get("path").asText(), json);
+        }
+        return lines;
+    }
+
+    private static Node mockNode(final String path, final String type, final Node... children)
+            throws RepositoryException {
+        final Node node = mock(Node.class);
+        when(node.getPath()).thenReturn(path);
+        when(node.getName()).thenReturn(path.substring(path.lastIndexOf('/') + 1));
+        when(node.isNodeType(type)).thenReturn(true);
+        final List<Node> childList = asList(children);
+        when(node.getNodes()).thenAnswer(invocation -> nodeIterator(childList.iterator()));
+        return node;
+    }
+
+    private static NodeIterator nodeIterator(final Iterator<Node> nodes) {
+        final NodeIterator iterator = mock(NodeIterator.class);
+        when(iterator.hasNext()).thenAnswer(invocation -> nodes.hasNext());
+        when(iterator.nextNode()).thenAnswer(invocation -> nodes.next());
+        return iterator;
+    }
+}
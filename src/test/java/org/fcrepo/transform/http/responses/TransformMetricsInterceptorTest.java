@@ -0,0 +1,73 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.http.responses;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
+import static org.fcrepo.metrics.RegistryService.getInstance;
+import static org.fcrepo.transform.TransformMetrics.METRICS_PREFIX;
+import static org.fcrepo.transform.TransformMetrics.SERIALIZATION;
+import static org.fcrepo.transform.TransformMetrics.ldpathPrefix;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.io.IOException;
+
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+/**
+ * <p>TransformMetricsInterceptorTest class.</p>
+ *
+ * @author agent
+ */
+public class TransformMetricsInterceptorTest {
+
+    @Mock
+    private WriterInterceptorContext mockContext;
+
+    private final TransformMetricsInterceptor testObj = new TransformMetricsInterceptor();
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        when(mockContext.getMediaType()).thenReturn(APPLICATION_JSON_TYPE);
+        when(mockContext.getEntity()).thenReturn(new byte[0]);
+    }
+
+    @Test
+    public void testAroundWriteTo() throws IOException {
+        final String prefix = ldpathPrefix("testAroundWriteTo");
+        when(mockContext.getProperty(METRICS_PREFIX)).thenReturn(prefix);
+
+        testObj.aroundWriteTo(mockContext);
+
+        verify(mockContext).proceed();
+        assertEquals(1, getInstance().getMetrics().timer(name(prefix, SERIALIZATION, "application-json")).getCount());
+    }
+
+    @Test
+    public void testAroundWriteToUntagged() throws IOException {
+        testObj.aroundWriteTo(mockContext);
+
+        verify(mockContext).proceed();
+    }
+}
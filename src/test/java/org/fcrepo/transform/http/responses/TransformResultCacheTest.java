@@ -0,0 +1,107 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.http.responses;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
+import static javax.ws.rs.core.MediaType.TEXT_PLAIN_TYPE;
+import static org.fcrepo.transform.http.responses.TransformResultCache.POSTED_QUERIES;
+import static org.fcrepo.transform.http.responses.TransformResultCache.resultKey;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+
+import javax.ws.rs.core.EntityTag;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * <p>TransformResultCacheTest class.</p>
+ *
+ * @author agent
+ */
+public class TransformResultCacheTest {
+
+    private static final URI BASE = URI.create("http://localhost/rest");
+
+    private final EntityTag etag = new EntityTag("abc");
+
+    @Test
+    public void testGetAndPut() {
+        final TransformResultCache testObj = new TransformResultCache(1024, ImmutableSet.of(), false);
+        final String key = resultKey("default", BASE, "/a", etag, APPLICATION_JSON_TYPE, "user");
+
+        assertNull(testObj.get(key));
+        testObj.put(key, new byte[] { 1, 2, 3 });
+        assertArrayEquals(new byte[] { 1, 2, 3 }, testObj.get(key));
+        assertEquals(1, testObj.hitCount());
+        assertEquals(1, testObj.missCount());
+
+        testObj.invalidateAll();
+        assertNull(testObj.get(key));
+    }
+
+    @Test
+    public void testResultKey() {
+        final String key = resultKey("default", BASE, "/a", etag, APPLICATION_JSON_TYPE, "user");
+        assertEquals(key, resultKey("default", BASE, "/a", new EntityTag("abc"), APPLICATION_JSON_TYPE, "user"));
+        assertNotEquals(key, resultKey("default", BASE, "/b", etag, APPLICATION_JSON_TYPE, "user"));
+        assertNotEquals(key, resultKey("default", BASE, "/a", new EntityTag("def"), APPLICATION_JSON_TYPE, "user"));
+        assertNotEquals(key, resultKey("default", BASE, "/a", etag, TEXT_PLAIN_TYPE, "user"));
+        assertNotEquals(key, resultKey("default", BASE, "/a", etag, APPLICATION_JSON_TYPE, "other"));
+        assertNotEquals(key, resultKey(POSTED_QUERIES, BASE, "/a", etag, APPLICATION_JSON_TYPE, "user"));
+        assertNotEquals(key, resultKey("default", URI.create("http://example.org/rest"), "/a", etag,
+                APPLICATION_JSON_TYPE, "user"));
+    }
+
+    @Test
+    public void testInvalidateProgram() {
+        final TransformResultCache testObj = new TransformResultCache(1024, ImmutableSet.of(), false);
+        final String key = resultKey("default", BASE, "/a", etag, APPLICATION_JSON_TYPE, "user");
+        final String otherKey = resultKey("other", BASE, "/a", etag, APPLICATION_JSON_TYPE, "user");
+        testObj.put(key, new byte[] { 1 });
+        testObj.put(otherKey, new byte[] { 2 });
+
+        testObj.invalidate("default");
+
+        assertNull(testObj.get(key));
+        assertArrayEquals(new byte[] { 2 }, testObj.get(otherKey));
+    }
+
+    @Test
+    public void testBoundedBySize() {
+        final TransformResultCache testObj = new TransformResultCache(100, ImmutableSet.of(), false);
+        for (int i = 0; i < 10; i++) {
+            testObj.put("key" + i, new byte[50]);
+        }
+        assertTrue(testObj.size() < 10);
+        assertTrue(testObj.evictionCount() > 0);
+    }
+
+    @Test
+    public void testIsEnabled() {
+        final TransformResultCache testObj = new TransformResultCache(1024, ImmutableSet.of("solr"), true);
+        assertTrue(testObj.isEnabled("solr"));
+        assertFalse(testObj.isEnabled("default"));
+        assertTrue(testObj.isEnabledForQueries());
+    }
+}
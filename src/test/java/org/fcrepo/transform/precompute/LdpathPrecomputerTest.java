@@ -0,0 +1,201 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.precompute;
+
+import static com.hp.hpl.jena.graph.NodeFactory.createLiteral;
+import static com.hp.hpl.jena.graph.NodeFactory.createURI;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static javax.jcr.observation.Event.NODE_ADDED;
+import static javax.jcr.observation.Event.PROPERTY_CHANGED;
+import static org.fcrepo.transform.precompute.LdpathPrecomputer.resourcePath;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+import javax.ws.rs.core.EntityTag;
+
+import org.fcrepo.kernel.api.utils.iterators.RdfStream;
+import org.fcrepo.transform.transformations.LDPathEvaluation;
+import org.fcrepo.transform.transformations.LDPathTransform;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * @author agent
+ */
+public class LdpathPrecomputerTest {
+
+    private static final String BASE_URI = "http://localhost:8080/rest";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Repository mockRepository;
+
+    private Session mockSession;
+
+    private PrecomputedResultStore store;
+
+    private LdpathPrecomputer precomputer;
+
+    @Before
+    public void setUp() throws IOException, RepositoryException {
+        mockRepository = mock(Repository.class);
+        mockSession = mock(Session.class, RETURNS_DEEP_STUBS);
+        when(mockRepository.login()).thenReturn(mockSession);
+        store = new PrecomputedResultStore(folder.getRoot().toPath());
+        precomputer = spy(new LdpathPrecomputer(mockRepository, ImmutableList.of("default"), store, BASE_URI));
+        precomputer.register();
+    }
+
+    @After
+    public void tearDown() throws RepositoryException {
+        precomputer.unregister();
+    }
+
+    @Test
+    public void testRegistersForChanges() throws RepositoryException {
+        verify(mockSession.getWorkspace().getObservationManager()).addEventListener(any(EventListener.class),
+                anyInt(), anyString(), anyBoolean(), any(String[].class), any(String[].class), anyBoolean());
+    }
+
+    @Test
+    public void testDisabledWithoutPrograms() throws IOException, RepositoryException {
+        final Repository unused = mock(Repository.class);
+        final LdpathPrecomputer disabled = new LdpathPrecomputer(unused, ImmutableList.of(), store, BASE_URI);
+        disabled.register();
+
+        assertFalse(disabled.isEnabled("default"));
+        verify(unused, never()).login();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRequiresDirectory() throws IOException, RepositoryException {
+        new LdpathPrecomputer(mockRepository, ImmutableList.of("default"), null, BASE_URI).register();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRequiresBaseUri() throws IOException, RepositoryException {
+        new LdpathPrecomputer(mockRepository, ImmutableList.of("default"), store, null).register();
+    }
+
+    @Test
+    public void testStoredResultIsServed() throws IOException {
+        final RdfStream rdfStream = new RdfStream();
+        rdfStream.concat(new Triple(createURI(BASE_URI + "/testObject"),
+                createURI("http://purl.org/dc/elements/1.1/date"),
+                createLiteral("2015-01-01T00:00:00Z", XSDDatatype.XSDdateTime)));
+        rdfStream.topic(createURI(BASE_URI + "/testObject"));
+        final LDPathEvaluation evaluation = new LDPathTransform(new ByteArrayInputStream(
+                "date = dc:date :: xsd:dateTime ;".getBytes(UTF_8))).bind(rdfStream);
+
+        precomputer.storeResult(BASE_URI + "/testObject", "default", new EntityTag("current"), evaluation);
+
+        final byte[] result = precomputer.lookup(BASE_URI + "/testObject", "default", new EntityTag("current"));
+        final JsonNode date = new ObjectMapper().readTree(result).get(0).get("date").get(0);
+        assertEquals(1420070400000L, date.asLong());
+    }
+
+    @Test
+    public void testLookup() throws IOException {
+        final byte[] result = {'[', ']'};
+        store.put(BASE_URI + "/testObject", "default", new EntityTag("current"), result);
+
+        assertTrue(precomputer.isEnabled("default"));
+        assertArrayEquals(result, precomputer.lookup(BASE_URI + "/testObject", "default", new EntityTag("current")));
+        assertNull(precomputer.lookup(BASE_URI + "/testObject", "default", new EntityTag("changed")));
+        assertFalse(precomputer.isEnabled("other"));
+        assertNull(precomputer.lookup(BASE_URI + "/testObject", "other", new EntityTag("current")));
+    }
+
+    @Test
+    public void testResourcePath() {
+        assertEquals("/testObject", resourcePath("/testObject", false));
+        assertEquals("/testObject", resourcePath("/testObject/dc:title", true));
+        assertEquals("/testObject/binary", resourcePath("/testObject/binary/jcr:content", false));
+        assertEquals("/testObject/binary", resourcePath("/testObject/binary/jcr:content/jcr:mimeType", true));
+        assertEquals("/testObject", resourcePath("/testObject/#/fragment", false));
+        assertEquals("/", resourcePath("/jcr:lastModified", true));
+        assertNull(resourcePath("/fedora:system/fedora:transform/fedora:ldpath", false));
+        assertNull(resourcePath("/jcr:system/jcr:versionStorage", false));
+    }
+
+    @Test
+    public void testEventsNameChangedResources() throws RepositoryException {
+        doNothing().when(precomputer).precompute(anyString());
+        final EventIterator events = mock(EventIterator.class);
+        final Event added = event(NODE_ADDED, "/testObject");
+        final Event changed = event(PROPERTY_CHANGED, "/testObject/dc:title");
+        final Event configuration = event(NODE_ADDED, "/fedora:system/fedora:transform");
+        when(events.hasNext()).thenReturn(true, true, true, false);
+        when(events.nextEvent()).thenReturn(added, changed, configuration);
+
+        precomputer.onEvent(events);
+
+        verify(precomputer, times(1)).resourceChanged("/testObject");
+        verify(precomputer, never()).resourceChanged("/fedora:system/fedora:transform");
+    }
+
+    @Test
+    public void testRemovedResource() throws IOException, RepositoryException {
+        store.put(BASE_URI + "/testObject", "default", new EntityTag("current"), new byte[] {'[', ']'});
+        when(mockSession.nodeExists("/testObject")).thenReturn(false);
+
+        precomputer.precompute("/testObject");
+
+        assertNull(store.get(BASE_URI + "/testObject", "default", new EntityTag("current")));
+        verify(mockSession).logout();
+    }
+
+    private static Event event(final int type, final String path) throws RepositoryException {
+        final Event event = mock(Event.class);
+        when(event.getType()).thenReturn(type);
+        when(event.getPath()).thenReturn(path);
+        return event;
+    }
+}
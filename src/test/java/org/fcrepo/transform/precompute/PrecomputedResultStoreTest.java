@@ -0,0 +1,98 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.precompute;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+
+import javax.ws.rs.core.EntityTag;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author agent
+ */
+public class PrecomputedResultStoreTest {
+
+    private static final String SUBJECT = "http://localhost:8080/rest/testObject";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PrecomputedResultStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        store = new PrecomputedResultStore(folder.getRoot().toPath().resolve("results"));
+    }
+
+    @Test
+    public void testFreshResult() throws IOException {
+        final byte[] result = "[{\"title\":[\"a title\"]}]".getBytes(UTF_8);
+        store.put(SUBJECT, "default", new EntityTag("current"), result);
+
+        assertArrayEquals(result, store.get(SUBJECT, "default", new EntityTag("current")));
+    }
+
+    @Test
+    public void testStaleResult() throws IOException {
+        store.put(SUBJECT, "default", new EntityTag("earlier"), new byte[] { '[', ']' });
+
+        assertNull(store.get(SUBJECT, "default", new EntityTag("current")));
+    }
+
+    @Test
+    public void testMissingResult() throws IOException {
+        store.put(SUBJECT, "default", new EntityTag("current"), new byte[] { '[', ']' });
+
+        assertNull(store.get(SUBJECT, "other", new EntityTag("current")));
+        assertNull(store.get(SUBJECT + "/child", "default", new EntityTag("current")));
+    }
+
+    @Test
+    public void testReplacedResult() throws IOException {
+        store.put(SUBJECT, "default", new EntityTag("earlier"), new byte[] { '[', ']' });
+        final byte[] result = "[{}]".getBytes(UTF_8);
+        store.put(SUBJECT, "default", new EntityTag("current"), result);
+
+        assertArrayEquals(result, store.get(SUBJECT, "default", new EntityTag("current")));
+        assertNull(store.get(SUBJECT, "default", new EntityTag("earlier")));
+    }
+
+    @Test
+    public void testRemovedResult() throws IOException {
+        store.put(SUBJECT, "default", new EntityTag("current"), new byte[] { '[', ']' });
+        store.remove(SUBJECT, "default");
+
+        assertNull(store.get(SUBJECT, "default", new EntityTag("current")));
+    }
+
+    @Test
+    public void testReopenedStore() throws IOException {
+        final byte[] result = "[{}]".getBytes(UTF_8);
+        store.put(SUBJECT, "default", new EntityTag("current"), result);
+
+        final PrecomputedResultStore reopened =
+                new PrecomputedResultStore(folder.getRoot().toPath().resolve("results"));
+        assertArrayEquals(result, reopened.get(SUBJECT, "default", new EntityTag("current")));
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.transformations;
+
+import static org.fcrepo.transform.transformations.LDPathProgramCache.programKey;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jcr.RepositoryException;
+
+import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>LDPathProgramCacheTest class.</p>
+ *
+ * @author agent
+ */
+public class LDPathProgramCacheTest {
+
+    private LDPathProgramCache testObj;
+
+    @Before
+    public void setUp() {
+        testObj = new LDPathProgramCache(1);
+    }
+
+    @Test
+    public void testRepeatLookupIsHit() {
+        final LDPathTransform program = mock(LDPathTransform.class);
+        final AtomicInteger loads = new AtomicInteger();
+
+        assertSame(program, testObj.get("/some/program@1", () -> {
+            loads.incrementAndGet();
+            return program;
+        }));
+        assertSame(program, testObj.get("/some/program@1", () -> {
+            loads.incrementAndGet();
+            return program;
+        }));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, testObj.hitCount());
+        assertEquals(1, testObj.missCount());
+    }
+
+    @Test
+    public void testEviction() {
+        final LDPathTransform program = mock(LDPathTransform.class);
+        testObj.get("/some/program@1", () -> program);
+        testObj.get("/some/program@2", () -> program);
+        assertEquals(1, testObj.size());
+    }
+
+    @Test
+    public void testReplace() {
+        final LDPathProgramCache cache = new LDPathProgramCache(10);
+        final LDPathTransform earlier = mock(LDPathTransform.class);
+        final LDPathTransform current = mock(LDPathTransform.class);
+        final LDPathTransform other = mock(LDPathTransform.class);
+        cache.get(programKey("/some/program", "1"), () -> earlier);
+        cache.get(programKey("/other/program", "1"), () -> other);
+
+        cache.replace("/some/program", "2", current);
+
+        assertEquals(2, cache.size());
+        assertSame(current, cache.get(programKey("/some/program", "2"), () -> earlier));
+        assertSame(other, cache.get(programKey("/other/program", "1"), () -> earlier));
+    }
+
+    @Test
+    public void testInvalidate() {
+        final LDPathProgramCache cache = new LDPathProgramCache(10);
+        final LDPathTransform program = mock(LDPathTransform.class);
+        cache.get(programKey("/some/program", "1"), () -> program);
+        cache.get(programKey("/other/program", "1"), () -> program);
+
+        cache.invalidate("/some/program");
+
+        assertEquals(1, cache.size());
+    }
+
+    @Test(expected = RepositoryRuntimeException.class)
+    public void testLoaderFailure() {
+        testObj.get("/some/program@1", () -> {
+            throw new RepositoryException("no such program");
+        });
+    }
+}
@@ -18,12 +18,17 @@ package org.fcrepo.transform.transformations;
 import static com.hp.hpl.jena.graph.NodeFactory.createLiteral;
 import static com.hp.hpl.jena.rdf.model.ResourceFactory.createProperty;
 import static com.hp.hpl.jena.rdf.model.ResourceFactory.createResource;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static org.fcrepo.transform.transformations.LDPathTransform.CONFIGURATION_FOLDER;
 import static org.fcrepo.transform.transformations.LDPathTransform.getNodeTypeTransform;
+import static org.fcrepo.transform.transformations.LDPathTransform.programLocations;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -32,6 +37,7 @@ import java.io.InputStream;
 import java.util.Collection;
 import java.util.Map;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
@@ -39,7 +45,9 @@ import javax.jcr.Session;
 import javax.jcr.nodetype.NodeType;
 import javax.ws.rs.WebApplicationException;
 
+import com.google.common.collect.ImmutableList;
 import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
 import org.fcrepo.kernel.api.utils.iterators.RdfStream;
 import org.junit.Before;
 import org.junit.Test;
@@ -59,8 +67,7 @@ public class LDPathTransformTest {
     @Mock
     private Session mockSession;
 
-    @Mock
-    private InputStream mockInputStream;
+    private static final String PROGRAM = "title = dc:title :: xsd:string ;";
 
     @Mock
     private NodeType mockNodeType;
@@ -72,6 +79,7 @@ public class LDPathTransformTest {
         initMocks(this);
 
         when(mockNode.getSession()).thenReturn(mockSession);
+        programLocations().invalidateAll();
     }
 
     @Test(expected = WebApplicationException.class)
@@ -86,6 +94,30 @@ public class LDPathTransformTest {
         getNodeTypeTransform(mockNode, "some-program");
     }
 
+    @Test
+    public void testGetNodeTypeSpecificLdpathProgramRemembersMissingProgram() throws RepositoryException {
+        final Node mockConfigNode = mock(Node.class);
+        when(mockSession.getNode(CONFIGURATION_FOLDER + "some-program")).thenReturn(mockConfigNode);
+
+        when(mockNode.getMixinNodeTypes()).thenReturn(new NodeType[]{});
+        final NodeType mockNtBase = mock(NodeType.class);
+        when(mockNodeType.getSupertypes()).thenReturn(new NodeType[] { mockNtBase });
+        when(mockNodeType.getName()).thenReturn("custom:type");
+        when(mockNodeType.toString()).thenReturn("custom:type");
+        when(mockNode.getPrimaryNodeType()).thenReturn(mockNodeType);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                getNodeTypeTransform(mockNode, "some-program");
+                fail("Expected no program to be found");
+            } catch (final WebApplicationException e) {
+                // expected
+            }
+        }
+        verify(mockConfigNode, times(1)).hasNode("custom:type");
+        assertEquals(1, programLocations().size());
+    }
+
     @Test
     public void testGetNodeTypeSpecificLdpathProgramForNodeTypeProgram() throws RepositoryException {
         final Node mockConfigNode = mock(Node.class);
@@ -100,10 +132,11 @@ public class LDPathTransformTest {
         when(mockConfigNode.hasNode("custom:type")).thenReturn(true);
         when(mockConfigNode.getNode("custom:type")).thenReturn(mockTypeConfigNode);
         when(mockTypeConfigNode.getNode("jcr:content").getProperty("jcr:data").getBinary().getStream()).thenReturn(
-                mockInputStream);
+                new ByteArrayInputStream(PROGRAM.getBytes()));
         final LDPathTransform nodeTypeSpecificLdpathProgramStream = getNodeTypeTransform(mockNode, "some-program");
 
-        assertEquals(new LDPathTransform(mockInputStream), nodeTypeSpecificLdpathProgramStream);
+        assertEquals(new LDPathTransform(new ByteArrayInputStream(PROGRAM.getBytes())),
+                nodeTypeSpecificLdpathProgramStream);
     }
 
     @Test
@@ -123,12 +156,40 @@ public class LDPathTransformTest {
         when(mockConfigNode.hasNode("nt:base")).thenReturn(true);
         when(mockConfigNode.getNode("nt:base")).thenReturn(mockTypeConfigNode);
         when(mockTypeConfigNode.getNode("jcr:content").getProperty("jcr:data").getBinary().getStream()).thenReturn(
-                mockInputStream);
+                new ByteArrayInputStream(PROGRAM.getBytes()));
 
         final LDPathTransform nodeTypeSpecificLdpathProgramStream =
                 getNodeTypeTransform(mockNode, "some-program");
 
-        assertEquals(new LDPathTransform(mockInputStream), nodeTypeSpecificLdpathProgramStream);
+        assertEquals(new LDPathTransform(new ByteArrayInputStream(PROGRAM.getBytes())),
+                nodeTypeSpecificLdpathProgramStream);
+    }
+
+    @Test
+    public void testGetNodeTypeSpecificLdpathProgramIsCached() throws RepositoryException {
+        final Node mockConfigNode = mock(Node.class);
+        final Node mockTypeConfigNode = mock(Node.class, RETURNS_DEEP_STUBS);
+        final org.modeshape.jcr.api.Binary mockBinary = mock(org.modeshape.jcr.api.Binary.class);
+        when(mockSession.getNode(CONFIGURATION_FOLDER + "cached-program")).thenReturn(mockConfigNode);
+
+        final NodeType mockNtBase = mock(NodeType.class);
+        when(mockNodeType.getSupertypes()).thenReturn(new NodeType[] { mockNtBase });
+        when(mockNode.getPrimaryNodeType()).thenReturn(mockNodeType);
+        when(mockNode.getMixinNodeTypes()).thenReturn(new NodeType[] {});
+        when(mockNodeType.toString()).thenReturn("custom:type");
+        when(mockConfigNode.hasNode("custom:type")).thenReturn(true);
+        when(mockConfigNode.getNode("custom:type")).thenReturn(mockTypeConfigNode);
+        when(mockTypeConfigNode.getPath()).thenReturn(CONFIGURATION_FOLDER + "cached-program/custom:type");
+        when(mockTypeConfigNode.getNode("jcr:content").getProperty("jcr:data").getBinary()).thenReturn(mockBinary);
+        when(mockBinary.getHexHash()).thenReturn("testGetNodeTypeSpecificLdpathProgramIsCached");
+        when(mockBinary.getStream()).thenReturn(new ByteArrayInputStream("title = dc:title :: xsd:string ;"
+                .getBytes()));
+
+        final LDPathTransform first = getNodeTypeTransform(mockNode, "cached-program");
+        final LDPathTransform second = getNodeTypeTransform(mockNode, "cached-program");
+
+        assertEquals(first, second);
+        verify(mockBinary, times(1)).getStream();
     }
 
     @Test
@@ -150,4 +211,58 @@ public class LDPathTransformTest {
         assertEquals(1, stringCollectionMap.get("title").size());
         assertTrue(stringCollectionMap.get("title").contains("some-title"));
     }
+
+    @Test
+    public void testMemoizedProgramQuery() {
+        final String dc = "http://purl.org/dc/elements/1.1/";
+        final RdfStream rdfStream = new RdfStream();
+        rdfStream.concat(new Triple(createResource("abc").asNode(), createProperty(dc + "relation").asNode(),
+                createResource("def").asNode()));
+        rdfStream.concat(new Triple(createResource("def").asNode(), createProperty(dc + "title").asNode(),
+                createLiteral("related-title")));
+        rdfStream.concat(new Triple(createResource("def").asNode(), createProperty(dc + "creator").asNode(),
+                createLiteral("related-creator")));
+        rdfStream.topic(createResource("abc").asNode());
+        final Model model = rdfStream.asModel();
+        testObj = new LDPathTransform(new ByteArrayInputStream(("relatedTitle = dc:relation / dc:title :: xsd:string ;"
+                + "relatedCreator = dc:relation / dc:creator :: xsd:string ;").getBytes()));
+
+        final Map<String, Collection<?>> memoized = testObj.bind(model, rdfStream.topic(), true).asMap();
+
+        assertEquals(testObj.bind(model, rdfStream.topic(), false).asMap(), memoized);
+        assertTrue(memoized.get("relatedTitle").contains("related-title"));
+        assertTrue(memoized.get("relatedCreator").contains("related-creator"));
+    }
+
+    @Test
+    public void testParallelProgramQuery() {
+        final String dc = "http://purl.org/dc/elements/1.1/";
+        final RdfStream rdfStream = new RdfStream();
+        rdfStream.concat(new Triple(createResource("abc").asNode(), createProperty(dc + "title").asNode(),
+                createLiteral("some-title")));
+        rdfStream.concat(new Triple(createResource("abc").asNode(), createProperty(dc + "creator").asNode(),
+                createLiteral("some-creator")));
+        rdfStream.concat(new Triple(createResource("abc").asNode(), createProperty(dc + "subject").asNode(),
+                createLiteral("some-subject")));
+        rdfStream.topic(createResource("abc").asNode());
+        final Model model = rdfStream.asModel();
+        testObj = new LDPathTransform(new ByteArrayInputStream(("title = dc:title :: xsd:string ;"
+                + "creator = dc:creator :: xsd:string ; subject = dc:subject :: xsd:string ;").getBytes()));
+
+        final ExecutorService fields = newFixedThreadPool(3);
+        try {
+            final LDPathEvaluation evaluation = testObj.bind(model, rdfStream.topic(), true, fields);
+            final long start = System.nanoTime();
+            final Map<String, Collection<?>> parallel = evaluation.asMap();
+            final long elapsed = System.nanoTime() - start;
+
+            assertTrue("Concurrent fields are timed by the wall clock", evaluation.evaluationNanos() <= elapsed);
+
+            assertEquals(testObj.bind(model, rdfStream.topic(), false, null).asMap(), parallel);
+            assertEquals(ImmutableList.of("title", "creator", "subject"), ImmutableList.copyOf(parallel.keySet()));
+            assertTrue(parallel.get("subject").contains("some-subject"));
+        } finally {
+            fields.shutdown();
+        }
+    }
 }
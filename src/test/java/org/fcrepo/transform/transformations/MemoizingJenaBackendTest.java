@@ -0,0 +1,82 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.transformations;
+
+import static com.hp.hpl.jena.rdf.model.ModelFactory.createDefaultModel;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+/**
+ * @author agent
+ */
+public class MemoizingJenaBackendTest {
+
+    private static final String DC = "http://purl.org/dc/elements/1.1/";
+
+    private Model model;
+
+    private Resource subject;
+
+    private Resource related;
+
+    private Property relation;
+
+    private MemoizingJenaBackend testObj;
+
+    @Before
+    public void setUp() {
+        model = createDefaultModel();
+        subject = model.createResource("info:fedora/abc");
+        related = model.createResource("info:fedora/def");
+        relation = model.createProperty(DC, "relation");
+        subject.addProperty(relation, related);
+        testObj = new MemoizingJenaBackend(model);
+    }
+
+    @Test
+    public void testObjectsAreRemembered() {
+        assertTrue(testObj.listObjects(subject, relation).contains(related));
+        assertEquals(0, testObj.hitCount());
+
+        assertTrue(testObj.listObjects(subject, relation).contains(related));
+        assertEquals(1, testObj.hitCount());
+    }
+
+    @Test
+    public void testSubjectsAreRemembered() {
+        assertTrue(testObj.listSubjects(relation, related).contains(subject));
+        assertTrue(testObj.listSubjects(relation, related).contains(subject));
+        assertEquals(1, testObj.hitCount());
+    }
+
+    @Test
+    public void testStepsAreDistinguished() {
+        final Property title = model.createProperty(DC, "title");
+        subject.addProperty(title, "a title");
+
+        assertEquals(1, testObj.listObjects(subject, relation).size());
+        assertEquals(1, testObj.listObjects(subject, title).size());
+        assertEquals(0, testObj.listObjects(related, relation).size());
+        assertEquals(0, testObj.hitCount());
+    }
+}
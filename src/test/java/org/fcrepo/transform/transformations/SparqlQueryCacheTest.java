@@ -0,0 +1,73 @@
+/**
+ * Copyright 2015 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.transform.transformations;
+
+import static org.fcrepo.transform.transformations.SparqlQueryCache.hash;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryParseException;
+
+/**
+ * <p>SparqlQueryCacheTest class.</p>
+ *
+ * @author agent
+ */
+public class SparqlQueryCacheTest {
+
+    private static final String QUERY = "SELECT ?title WHERE { ?x <http://purl.org/dc/elements/1.1/title> ?title }";
+
+    private SparqlQueryCache testObj;
+
+    @Before
+    public void setUp() {
+        testObj = new SparqlQueryCache(1024 * 1024);
+    }
+
+    @Test
+    public void testRepeatQueryIsHit() {
+        final Query first = testObj.get(QUERY);
+        final Query second = testObj.get("\r\n" + QUERY + "  \r\n");
+
+        assertSame(first, second);
+        assertEquals(1, testObj.missCount());
+        assertEquals(1, testObj.hitCount());
+    }
+
+    @Test
+    public void testHashIgnoresSurroundingWhitespace() {
+        assertEquals(hash(QUERY), hash("  " + QUERY + "\n"));
+        assertNotEquals(hash(QUERY), hash(QUERY.replace("?title", "?name")));
+    }
+
+    @Test
+    public void testSizeBound() {
+        testObj = new SparqlQueryCache(QUERY.length());
+        testObj.get(QUERY);
+        testObj.get(QUERY.replace("?title", "?name"));
+        assertEquals(0, testObj.size());
+    }
+
+    @Test(expected = QueryParseException.class)
+    public void testInvalidQuery() {
+        testObj.get("SELECT WHERE");
+    }
+}
@@ -32,10 +32,14 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import static com.hp.hpl.jena.graph.NodeFactory.createLiteral;
+import static com.hp.hpl.jena.rdf.model.ModelFactory.createDefaultModel;
 import static com.hp.hpl.jena.rdf.model.ResourceFactory.createProperty;
 import static com.hp.hpl.jena.rdf.model.ResourceFactory.createResource;
+import static org.fcrepo.transform.transformations.SparqlQueryTransform.effectiveTimeout;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -84,10 +88,47 @@ public class SparqlQueryTransformTest {
     }
 
     @Test (expected = IllegalStateException.class)
-    public void testApplyException() {
-        final RdfStream model = mock(RdfStream.class);
-        testObj = new SparqlQueryTransform(null);
-        doThrow(IOException.class).when(model).asModel();
-        testObj.apply(model);
+    public void testConstructionException() throws IOException {
+        final InputStream query = mock(InputStream.class);
+        doThrow(IOException.class).when(query).read(any(byte[].class));
+        doThrow(IOException.class).when(query).read(any(byte[].class), anyInt(), anyInt());
+        new SparqlQueryTransform(query);
+    }
+
+    @Test
+    public void testApplyReusable() {
+        final InputStream query = new ByteArrayInputStream(("SELECT ?title WHERE\n" +
+                "{\n" +
+                "  <http://example.org/book/book1> <http://purl.org/dc/elements/1.1/title> ?title .\n" +
+                "} ").getBytes());
+        testObj = new SparqlQueryTransform(query);
+
+        for (final String title : new String[] { "first-title", "second-title" }) {
+            final RdfStream model = new RdfStream();
+            model.concat(new Triple(createResource("http://example.org/book/book1").asNode(),
+                    createProperty("http://purl.org/dc/elements/1.1/title").asNode(),
+                    createLiteral(title)));
+            try (final QueryExecution apply = testObj.apply(model)) {
+                assertEquals(title, apply.execSelect().nextSolution().get("title").asLiteral().getValue());
+            }
+        }
+    }
+
+    @Test
+    public void testEffectiveTimeout() {
+        assertEquals(60000, effectiveTimeout(60000, null));
+        assertEquals(5000, effectiveTimeout(60000, 5000L));
+        assertEquals(60000, effectiveTimeout(60000, 120000L));
+        assertEquals(60000, effectiveTimeout(60000, 0L));
+        assertEquals(5000, effectiveTimeout(0, 5000L));
+        assertEquals(0, effectiveTimeout(0, null));
+    }
+
+    @Test
+    public void testBindWithTimeout() {
+        testObj = new SparqlQueryTransform(new ByteArrayInputStream("SELECT ?s WHERE { ?s ?p ?o }".getBytes()));
+        try (final QueryExecution execution = testObj.bind(createDefaultModel(), 5000L)) {
+            assertEquals(5000, execution.getTimeout1());
+        }
     }
 }